@@ -5,11 +5,20 @@ import eu.larkc.csparql.core.engine.ConsoleFormatter;
 import eu.larkc.csparql.core.engine.CsparqlEngineImpl;
 import eu.larkc.csparql.core.engine.CsparqlQueryResultProxy;
 import eu.larkc.csparql.core.engine.RDFStreamFormatter;
+import eu.larkc.csparql.eu.tsp.test.operator.AggregateQueryRecognizer;
+import eu.larkc.csparql.eu.tsp.test.operator.ObservationWindowOperator;
+import eu.larkc.csparql.eu.tsp.test.operator.ReachableSubgraphOperator;
+import eu.larkc.csparql.eu.tsp.test.replay.ReplayClock;
 import eu.larkc.csparql.eu.tsp.test.streamer.CouchStreamer;
+import eu.larkc.csparql.eu.tsp.test.streamer.HomeLogRouter;
+import eu.larkc.csparql.eu.tsp.test.streamer.HomeStreamer;
 import eu.larkc.csparql.eu.tsp.test.streamer.HomeStreamerBoolean;
 import eu.larkc.csparql.eu.tsp.test.streamer.HomeStreamerNumeric;
 import eu.larkc.csparql.eu.tsp.test.streamer.TvStreamer;
-import org.apache.log4j.PropertyConfigurator;
+import eu.larkc.csparql.runtime.AsyncObserver;
+import eu.larkc.csparql.runtime.LatencyProbe;
+import eu.larkc.csparql.runtime.ShardedEngine;
+import org.apache.log4j.xml.DOMConfigurator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,20 +27,38 @@ public class ECareHome {
 
    /*
      * ECARE-HOME Reasoning example
+     *
+     * Optional arguments:
+     * - replay speed-up factor of the recorded timestamps (1, 60, 3600, max). Without it the
+     *   streamers wait a fixed 500 ms between two observations.
+     * - sensor log: a text, gzip or binary log, a directory of logs (one per home) replayed
+     *   in timestamp order, "-" for stdin or tcp://host:port. Defaults to
+     *   HomeStreamer.DEFAULT_LOG_FILE.
+     * - number of engine shards (default 1): each engine owns a disjoint set of homes, its own
+     *   streams and its own copy of the queries, and the results of all of them are merged.
+     * - debounce interval of the couch stream in ms (default 0, off): the identical readings
+     *   of a sensor within the interval are published as one observation with their count,
+     *   weighed by the cleancouch aggregator but counted once by the cleancouch query.
+     * - "preaggregate": cleancouch and cleantv are computed by the operators
+     *   AggregateQueryRecognizer compiles them into, when recognized, and the partitioned
+     *   subgraphs by a ReachableSubgraphOperator; otherwise the queries are registered in the
+     *   engine as usual. The events are then shown by the QUERY_CLEAN_*_EVENTS queries, whose
+     *   own window adds up to one more window of delay before they are printed.
      */
 
     public static void main(String[] args) {
 
         try{
 
-           //Configure log4j logger for the csparql engine
-            PropertyConfigurator.configure("log4j_configuration/csparql_readyToGoPack_log4j.properties");
+           //Configure log4j logger for the csparql engine (asynchronous appenders: logging stays off the replay path)
+            DOMConfigurator.configure("log4j_configuration/csparql_async_log4j.xml");
 
-           //Create csparql engine instance
-            final CsparqlEngineImpl engine = new CsparqlEngineImpl();
-           //Initialize the engine instance
+           //Create and initialize the csparql engine instances, one per shard of the homes
            //The initialization creates the static engine (SPARQL) and the stream engine (CEP)
-            engine.initialize();
+            int shards = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+            ShardedEngine engines = new ShardedEngine(shards);
+            long debounceInterval = args.length > 3 ? Long.parseLong(args[3]) : 0L;
+            boolean preaggregate = args.length > 4 && "preaggregate".equals(args[4]);
 
             String queryStreamNumeric = "REGISTER STREAM cleantv AS " +
                     "PREFIX :<http://ecareathome.org/stream#> " +
@@ -150,41 +177,87 @@ public class ECareHome {
                     "?subject ?predicate ?object " +
                     "}";
 
-            HomeStreamerBoolean streamBoolean = new HomeStreamerBoolean("http://ecareathome.org/stream#couch", "", 500L);
-            HomeStreamerNumeric streamerNumeric = new HomeStreamerNumeric("http://ecareathome.org/stream#tv", "", 500L);
+            //All the streams are fed by a single reader of the sensor log, by shard of the home
+            HomeLogRouter router = new HomeLogRouter(args.length > 1 ? args[1] : HomeStreamer.DEFAULT_LOG_FILE, 500L);
+            router.setShards(shards);
+            if (args.length > 0) {
+                router.setReplayClock(ReplayClock.parse(args[0]));
+            }
 
-            //Register new streams in the engine
-            engine.registerStream(streamBoolean);
-            engine.registerStream(streamerNumeric);
+            Thread routerThread = new Thread(router);
 
-            Thread booleanValueThread = new Thread(streamBoolean);
-            Thread numericValueThread = new Thread(streamerNumeric);
+            //The results of all the shards are merged into the same consumers, printed off the engine threads
+            AsyncObserver couchResults = new AsyncObserver(new ConsoleFormatter(), "cleancouch console");
+            AsyncObserver tvResults = new AsyncObserver(new ConsoleFormatter(), "cleantv console");
+            //the partitioned quads keep the time of the sensor observations they come from
+            LatencyProbe partitionedLatency = new LatencyProbe("sensors -> partitioned");
 
-            CsparqlQueryResultProxy streamQ1 = engine.registerQuery(queryStreamBoolean, false);
-            CsparqlQueryResultProxy streamQ2 = engine.registerQuery(queryStreamNumeric, false);
+            for (int shard = 0; shard < shards; shard++) {
+                CsparqlEngineImpl engine = engines.getEngine(shard);
 
+                HomeStreamerBoolean streamBoolean = new HomeStreamerBoolean("http://ecareathome.org/stream#couch", "", 500L);
+                HomeStreamerNumeric streamerNumeric = new HomeStreamerNumeric("http://ecareathome.org/stream#tv", "", 500L);
+                streamBoolean.setDebounceInterval(debounceInterval);
+                router.addStream(streamBoolean, shard);
+                router.addStream(streamerNumeric, shard);
 
-            //Attach a result consumer to the query result proxy to generate a new streams
-            /*RdfStream cleanCouch = new RDFStreamFormatter("http://ecareathome.org/stream#cleancouch");
-            RdfStream cleanTv = new RDFStreamFormatter("http://ecareathome.org/stream#cleantv");
+                //Register new streams in the engine
+                engine.registerStream(streamBoolean);
+                engine.registerStream(streamerNumeric);
 
-            //streamQ1.addObserver(new ConsoleFormatter());
-            streamQ1.addObserver((RDFStreamFormatter) cleanCouch);
-            streamQ2.addObserver((RDFStreamFormatter) cleanTv);*/
+                //cleancouch counts true and false results: computed in one pass when recognized
+                CsparqlQueryResultProxy streamQ1;
+                ObservationWindowOperator cleanCouchAggregator = preaggregate ? AggregateQueryRecognizer.attach(queryStreamBoolean, streamBoolean) : null;
+                if (cleanCouchAggregator != null) {
+                    engine.registerStream(cleanCouchAggregator);
+                    cleanCouchAggregator.start();
+                    streamQ1 = engine.registerQuery(couchAgent.QUERY_CLEAN_COUCH_EVENTS, false);
+                } else {
+                    streamQ1 = engine.registerQuery(queryStreamBoolean, false);
+                }
+                //cleantv is an aggregate over observations: computed incrementally when recognized
+                CsparqlQueryResultProxy streamQ2;
+                ObservationWindowOperator cleanTvAggregator = preaggregate ? AggregateQueryRecognizer.attach(queryStreamNumeric, streamerNumeric) : null;
+                if (cleanTvAggregator != null) {
+                    engine.registerStream(cleanTvAggregator);
+                    cleanTvAggregator.start();
+                    streamQ2 = engine.registerQuery(tvAgent.QUERY_CLEAN_TV_EVENTS, false);
+                } else {
+                    streamQ2 = engine.registerQuery(queryStreamNumeric, false);
+                }
 
 
-            streamQ1.addObserver(new ConsoleFormatter());
-            streamQ2.addObserver(new ConsoleFormatter());
+                //Attach a result consumer to the query result proxy to generate a new streams
+                /*RdfStream cleanCouch = new RDFStreamFormatter("http://ecareathome.org/stream#cleancouch");
+                RdfStream cleanTv = new RDFStreamFormatter("http://ecareathome.org/stream#cleantv");
 
-            //engine.registerStream(cleanCouch);
-            //engine.registerStream(cleanTv);
+                //streamQ1.addObserver(new ConsoleFormatter());
+                streamQ1.addObserver((RDFStreamFormatter) cleanCouch);
+                streamQ2.addObserver((RDFStreamFormatter) cleanTv);*/
 
-            //Start streaming data
-            booleanValueThread.start();
-            numericValueThread.start();
 
-            //Register new query in the engine
-            //CsparqlQueryResultProxy streamPartition = engine.registerQuery(streamPartitioned, false);
+                streamQ1.addObserver(couchResults);
+                streamQ2.addObserver(tvResults);
+
+                //engine.registerStream(cleanCouch);
+                //engine.registerStream(cleanTv);
+
+                //Register new query in the engine
+                //CsparqlQueryResultProxy streamPartition = engine.registerQuery(streamPartitioned, false);
+
+                //streamPartitioned with the (! <>)* path bounded: the subgraph of each ComplexEvent
+                if (cleanTvAggregator != null && cleanCouchAggregator != null) {
+                    ReachableSubgraphOperator partitioned = new ReachableSubgraphOperator("http://ecareathome.org/stream#partitioned", 10000L);
+                    cleanTvAggregator.addObserver(partitioned);
+                    cleanCouchAggregator.addObserver(partitioned);
+                    partitioned.addObserver(partitionedLatency);
+                    engine.registerStream(partitioned);
+                    partitioned.start();
+                }
+            }
+
+            //Start streaming data
+            routerThread.start();
 
             //streamPartition.addObserver(new ConsoleFormatter());
 
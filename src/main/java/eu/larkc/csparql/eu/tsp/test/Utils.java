@@ -1,17 +1,12 @@
 package eu.larkc.csparql.eu.tsp.test;
 
+import eu.larkc.csparql.eu.tsp.test.literal.LiteralEncoder;
+import eu.larkc.csparql.eu.tsp.test.sensor.SensorRegistry;
+
 public class Utils {
 
     public static boolean isInteger(String s) {
-        try {
-            Integer.parseInt(s);
-        } catch(NumberFormatException e) {
-            return false;
-        } catch(NullPointerException e) {
-            return false;
-        }
-        // only got here if we didn't return false
-        return true;
+        return LiteralEncoder.isInteger(s);
     }
 
     public static boolean isBoolean(String s) {
@@ -25,87 +20,23 @@ public class Utils {
     }
 
     public static boolean isBooleanHerit(String s){
-        if (s.equals("ON") || s.equals("OFF") || s.equals("OPEN") || s.equals("CLOSE") || s.equals("TRUE") || s.equals("FALSE")){
-            return true;
-        }
-        return false;
+        return LiteralEncoder.booleanValue(s) != LiteralEncoder.NOT_A_BOOLEAN;
     }
 
     public static int getBooleanFromString(String s){
-        return s.equals("ON") || s.equals("OPEN") || s.equals("TRUE") ? 100 : 0;
+        return LiteralEncoder.booleanValue(s) == 1 ? 100 : 0;
     }
 
     public static boolean getBooleanFromBooleanValue(String s){
-        return s.equals("ON") || s.equals("OPEN") || s.equals("TRUE") ? true : false;
+        return LiteralEncoder.booleanValue(s) == 1;
     }
 
     public static String getTypeValeur(String valeurCapteur){
-        String valeurCapteurNormalize;
         /** Determiner le type de la valeur */
-        if (isInteger(valeurCapteur)){
-            valeurCapteurNormalize = "\""+ valeurCapteur + "\"^^http://www.w3.org/2001/XMLSchema#integer";
-        }
-        else if (isBooleanHerit(valeurCapteur)){
-            valeurCapteurNormalize = "\""+ getBooleanFromString(valeurCapteur) + "\"^^http://www.w3.org/2001/XMLSchema#integer";
-        }
-        //else if (isBoolean(valeurCapteur)){
-          //  valeurCapteurNormalize = "\""+ valeurCapteur + "\"^^http://www.w3.org/2001/XMLSchema#boolean";
-        //}
-        else {
-            valeurCapteurNormalize = "\""+ valeurCapteur + "\"^^http://www.w3.org/2001/XMLSchema#string";
-        }
-        return valeurCapteurNormalize;
-
+        return LiteralEncoder.encode(valeurCapteur);
     }
 
-    public static String getTypeCapteur(String s) {
-        String typeCapteur;
-        String acrTypeCapteur;
-        switch (s.substring(0,1)) {
-            case "D":
-                typeCapteur = "magnetic_door_sensors";
-                acrTypeCapteur = s.substring(0,1);
-                break;
-            case "L":
-                typeCapteur = "light_sensors";
-                acrTypeCapteur = s.substring(0,1);
-                switch (s.substring(0,2)) {
-                    case "LS":
-                        typeCapteur = "light_sensors";
-                        acrTypeCapteur = s.substring(0,2);
-                        break;
-                    case "LA":
-                        typeCapteur = "light_switches";
-                        acrTypeCapteur = s.substring(0,2);
-                        break;
-                }
-                break;
-            case "M":
-                if(s.substring(0,2).equals("MA")){
-                    typeCapteur = "wide_area_infrared_motion_sensors";
-                    acrTypeCapteur = s.substring(0,2);
-                }
-                else {
-                    typeCapteur = "infrared_motion_sensors";
-                    acrTypeCapteur = s.substring(0, 1);
-                }
-                break;
-            case "T":
-                typeCapteur = "temperature_sensors";
-                acrTypeCapteur = s.substring(0,1);
-                break;
-            default:
-                switch (s.substring(0,2)) {
-                    case "BA":
-                        typeCapteur = "sensor_battery_levels";
-                        acrTypeCapteur = s.substring(0,2);
-                        break;
-                    default:
-                        typeCapteur = "unknown_sensors";
-                        acrTypeCapteur = s.substring(0,1);
-                        break;
-                }
-        }
-        return typeCapteur;
+    public static String getTypeCapteur(CharSequence s) {
+        return SensorRegistry.getDefault().lookup(s).getType();
     }
 }
@@ -0,0 +1,89 @@
+package eu.larkc.csparql.eu.tsp.test.bench;
+
+import eu.larkc.csparql.eu.tsp.test.streamer.ObservationIds;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how many observation labels per second 64 concurrent producers get from
+ * {@link ObservationIds}, compared with UUID.randomUUID() and a shared Random.
+ *
+ * Usage: ObservationIdsBenchmark [threads] [seconds]
+ */
+public class ObservationIdsBenchmark {
+
+    private interface IdSource {
+        String next();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        final ObservationIds ids = ObservationIds.newSequence();
+        final Random random = new Random();
+
+        // warm-up
+        run("warm-up", threads, 1, new IdSource() {
+            public String next() {
+                return ids.next();
+            }
+        });
+
+        run("ObservationIds", threads, seconds, new IdSource() {
+            public String next() {
+                return ids.next();
+            }
+        });
+        run("UUID.randomUUID", threads, seconds, new IdSource() {
+            public String next() {
+                return UUID.randomUUID().toString();
+            }
+        });
+        run("Random.nextInt", threads, seconds, new IdSource() {
+            public String next() {
+                return Integer.toString(random.nextInt(Integer.MAX_VALUE));
+            }
+        });
+    }
+
+    private static void run(String name, int threads, int seconds, final IdSource source) throws InterruptedException {
+        final AtomicLong total = new AtomicLong();
+        final long deadline = System.nanoTime() + seconds * 1000000000L;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final int[] sink = new int[1];
+
+        for (int t = 0; t < threads; t++) {
+            Thread producer = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long count = 0;
+                    int hash = 0;
+                    while ((count & 1023) != 0 || System.nanoTime() < deadline) {
+                        hash += source.next().length();
+                        count++;
+                    }
+                    total.addAndGet(count);
+                    sink[0] += hash;
+                    done.countDown();
+                }
+            });
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        double elapsed = (System.nanoTime() - begin) / 1e9;
+        System.out.printf("%-16s %3d producers: %,15.0f ids/s%n", name, threads, total.get() / elapsed);
+    }
+}
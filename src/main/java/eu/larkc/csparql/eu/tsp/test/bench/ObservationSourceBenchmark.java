@@ -0,0 +1,45 @@
+package eu.larkc.csparql.eu.tsp.test.bench;
+
+import eu.larkc.csparql.eu.tsp.test.replay.ObservationSource;
+import eu.larkc.csparql.eu.tsp.test.replay.SensorReading;
+
+import java.io.IOException;
+
+/**
+ * Measures how fast each {@link ObservationSource} delivers readings, without any engine:
+ * every reading is read and its value touched, nothing else.
+ *
+ * Usage: ObservationSourceBenchmark location... (a path, "-" or tcp://host:port, see
+ * {@link ObservationSource#open(String)}). Files are read three times, the other sources once.
+ */
+public class ObservationSourceBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ObservationSourceBenchmark <location>...");
+            return;
+        }
+        for (String location : args) {
+            int runs = location.equals("-") || location.startsWith("tcp://") ? 1 : 3;
+            for (int run = 0; run < runs; run++) {
+                measure(location);
+            }
+        }
+    }
+
+    private static void measure(String location) throws IOException {
+        SensorReading reading = new SensorReading();
+        long count = 0;
+        long sink = 0;
+        long begin = System.nanoTime();
+        try (ObservationSource source = ObservationSource.open(location)) {
+            while (source.next(reading)) {
+                sink += reading.getValue().length();
+                count++;
+            }
+        }
+        double elapsed = (System.nanoTime() - begin) / 1e9;
+        System.out.printf("%-40s %,12d readings in %7.3f s: %,15.0f readings/s (%d)%n",
+                location, count, elapsed, count / elapsed, sink);
+    }
+}
@@ -5,7 +5,10 @@ import eu.larkc.csparql.core.engine.ConsoleFormatter;
 import eu.larkc.csparql.core.engine.CsparqlEngineImpl;
 import eu.larkc.csparql.core.engine.CsparqlQueryResultProxy;
 import eu.larkc.csparql.core.engine.RDFStreamFormatter;
+import eu.larkc.csparql.eu.tsp.test.operator.AggregateQueryRecognizer;
+import eu.larkc.csparql.eu.tsp.test.operator.ObservationWindowOperator;
 import eu.larkc.csparql.eu.tsp.test.streamer.CouchStreamer;
+import eu.larkc.csparql.runtime.AsyncObserver;
 
 import org.apache.log4j.PropertyConfigurator;
 import org.slf4j.Logger;
@@ -15,6 +18,72 @@ public class couchAgent {
 
     private static Logger logger = LoggerFactory.getLogger(couchAgent.class);
 
+    public static final String STREAM_CLEAN_COUCH = "REGISTER STREAM cleancouch AS " +
+            "PREFIX :<http://ecareathome.org/stream#> " +
+            "PREFIX rdf:<http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
+            "PREFIX xsd:<http://www.w3.org/2001/XMLSchema#> " +
+            "PREFIX dul:<http://www.ontologydesignpatterns.org/ont/dul/DUL.owl#> " +
+            "PREFIX time:<http://w3id.org/ecareathome/patterns/timeinterval.owl#> " +
+            "PREFIX event:<http://w3id.org/ecareathome/patterns/event.owl#> " +
+            "PREFIX sosa:<http://www.w3.org/ns/sosa#> " +
+            "CONSTRUCT " +
+            "{ " +
+            "_:c0 rdf:type event:ComplexEvent . " +
+            "_:c0 dul:isObservableAt _:c1 . " +
+            "_:c0 sosa:isObservedBy ?sensor . " +
+            "_:c0 sosa:hasSimpleResult ?value . " +
+            "_:c1 rdf:type dul:TimeInterval . " +
+            "_:c1 time:hasUpperTimeStampValue ?maxTime . " +
+            "_:c1 time:hasLowerTimeStampValue ?minTime . " +
+            "} " +
+            "FROM STREAM <http://ecareathome.org/stream#couch> [ RANGE 10s STEP 10s] " +
+            "WHERE " +
+            "{ { SELECT ?sensor ( MAX (?upper ) AS ?maxTime ) ( MIN (?lower ) AS ?minTime ) " +
+            "WHERE " +
+            "{ " +
+            "_:b0 sosa:isObservedBy ?sensor ; " +
+            "dul:isObservableAt _:b1 . " +
+            "_:b1 time:hasUpperTimeStampValue ?upper ; " +
+            "time:hasLowerTimeStampValue ?lower . " +
+            "} " +
+            "GROUP BY ?sensor " +
+            "} " +
+            "{ SELECT ?sensor ( COUNT(?sensor ) AS ?isTrue ) " +
+            "WHERE " +
+            "{ " +
+            "_:b2 sosa:isObservedBy ?sensor ; " +
+            "sosa:hasSimpleResult true . " +
+            "} " +
+            "GROUP BY ?sensor " +
+            "} " +
+            "{ SELECT ?sensor ( COUNT(?sensor ) AS ?isFalse ) " +
+            "WHERE " +
+            "{ " +
+            "_:b3 sosa:isObservedBy ?sensor ; " +
+            "sosa:hasSimpleResult false . " +
+            "} " +
+            "GROUP BY ?sensor " +
+            "} " +
+            "BIND (( ?isTrue/( ?isTrue + ?isFalse ) ) AS ?avg ) " +
+            "BIND (if (( ?avg >= 0.9 ) , true , if (( ?avg <0.1 ) , false , if (( ?avg <0.8) , true ,?avg ))) AS " +
+            "?value ) " +
+            "BIND ( now() AS ?time ) " +
+            "} ";
+
+    /**
+     * Shows the ComplexEvents of the pre-aggregated cleancouch stream. Its own window holds them
+     * back until it closes: up to one more window of delay than the query it replaces.
+     */
+    public static final String QUERY_CLEAN_COUCH_EVENTS = "REGISTER QUERY cleancouchEvents AS " +
+            "CONSTRUCT { ?s ?p ?o } " +
+            "FROM STREAM <http://ecareathome.org/stream#cleancouch> [ RANGE 10s STEP 10s] " +
+            "WHERE { ?s ?p ?o }";
+
+    /*
+     * With the "preaggregate" argument, cleancouch is computed in one pass by a
+     * BooleanRatioAggregator attached to the couch stream instead of the STREAM_CLEAN_COUCH query,
+     * when the query is recognized; otherwise the query is registered in the engine as usual.
+     */
     //  startTraitement
     public static void main(String[] args) {
         try{
@@ -28,79 +97,38 @@ public class couchAgent {
            //The initialization creates the static engine (SPARQL) and the stream engine (CEP)
             engine.initialize();
 
-            String streamCleanCouch = "REGISTER STREAM cleancouch AS " +
-                    "PREFIX :<http://ecareathome.org/stream#> " +
-                    "PREFIX rdf:<http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
-                    "PREFIX xsd:<http://www.w3.org/2001/XMLSchema#> " +
-                    "PREFIX dul:<http://www.ontologydesignpatterns.org/ont/dul/DUL.owl#> " +
-                    "PREFIX time:<http://w3id.org/ecareathome/patterns/timeinterval.owl#> " +
-                    "PREFIX event:<http://w3id.org/ecareathome/patterns/event.owl#> " +
-                    "PREFIX sosa:<http://www.w3.org/ns/sosa#> " +
-                    "CONSTRUCT " +
-                    "{ " +
-                    "_:c0 rdf:type event:ComplexEvent . " +
-                    "_:c0 dul:isObservableAt _:c1 . " +
-                    "_:c0 sosa:isObservedBy ?sensor . " +
-                    "_:c0 sosa:hasSimpleResult ?value . " +
-                    "_:c1 rdf:type dul:TimeInterval . " +
-                    "_:c1 time:hasUpperTimeStampValue ?maxTime . " +
-                    "_:c1 time:hasLowerTimeStampValue ?minTime . " +
-                    "} " +
-                    "FROM STREAM <http://ecareathome.org/stream#couch> [ RANGE 10s STEP 10s] " +
-                    "WHERE " +
-                    "{ { SELECT ?sensor ( MAX (?upper ) AS ?maxTime ) ( MIN (?lower ) AS ?minTime ) " +
-                    "WHERE " +
-                    "{ " +
-                    "_:b0 sosa:isObservedBy ?sensor ; " +
-                    "dul:isObservableAt _:b1 . " +
-                    "_:b1 time:hasUpperTimeStampValue ?upper ; " +
-                    "time:hasLowerTimeStampValue ?lower . " +
-                    "} " +
-                    "GROUP BY ?sensor " +
-                    "} " +
-                    "{ SELECT ?sensor ( COUNT(?sensor ) AS ?isTrue ) " +
-                    "WHERE " +
-                    "{ " +
-                    "_:b2 sosa:isObservedBy ?sensor ; " +
-                    "sosa:hasSimpleResult true . " +
-                    "} " +
-                    "GROUP BY ?sensor " +
-                    "} " +
-                    "{ SELECT ?sensor ( COUNT(?sensor ) AS ?isFalse ) " +
-                    "WHERE " +
-                    "{ " +
-                    "_:b3 sosa:isObservedBy ?sensor ; " +
-                    "sosa:hasSimpleResult false . " +
-                    "} " +
-                    "GROUP BY ?sensor " +
-                    "} " +
-                    "BIND (( ?isTrue/( ?isTrue + ?isFalse ) ) AS ?avg ) " +
-                    "BIND (if (( ?avg >= 0.9 ) , true , if (( ?avg <0.1 ) , false , if (( ?avg <0.8) , true ,?avg ))) AS " +
-                    "?value ) " +
-                    "BIND ( now() AS ?time ) " +
-                    "} ";
-
 
             CouchStreamer streamCouch = new CouchStreamer("http://ecareathome.org/stream#couch", "", 1000L);
 
             //Register new streams in the engine
             engine.registerStream(streamCouch);
 
-            Thread couchThread = new Thread(streamCouch);
+            CsparqlQueryResultProxy streamQ1;
+            ObservationWindowOperator cleanCouch = null;
+            if (args.length > 0 && "preaggregate".equals(args[0])) {
+                cleanCouch = AggregateQueryRecognizer.attach(STREAM_CLEAN_COUCH, streamCouch);
+            }
+            if (cleanCouch != null) {
+                engine.registerStream(cleanCouch);
+                cleanCouch.start();
 
-            CsparqlQueryResultProxy streamQ1 = engine.registerQuery(streamCleanCouch, false);
+                streamQ1 = engine.registerQuery(QUERY_CLEAN_COUCH_EVENTS, false);
+            } else {
+                streamQ1 = engine.registerQuery(STREAM_CLEAN_COUCH, false);
+            }
 
             //Attach a result consumer to the query result proxy to generate a new streams
             //RdfStream cleanCouch = new RDFStreamFormatter("http://ecareathome.org/stream#cleancouch");
 
-            streamQ1.addObserver(new ConsoleFormatter());
+            //printed off the engine thread
+            streamQ1.addObserver(new AsyncObserver(new ConsoleFormatter(), "cleancouch console"));
             //streamQ1.addObserver((RDFStreamFormatter) cleanCouch);
 
             //engine.registerStream(cleanCouch);
 
 
             //Start streaming data
-            couchThread.start();
+            streamCouch.start();
 
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
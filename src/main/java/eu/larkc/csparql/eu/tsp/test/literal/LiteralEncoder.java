@@ -0,0 +1,167 @@
+package eu.larkc.csparql.eu.tsp.test.literal;
+
+import java.math.BigDecimal;
+
+/**
+ * Encodes the raw sensor values into the typed literals put on the streams.
+ *
+ * Values are validated without exceptions and read straight from a {@link CharSequence}
+ * (possibly a view over the mapped log). The literals of the usual value domain (integers
+ * 0 to 100, booleans, ON/OFF/OPEN/CLOSE/TRUE/FALSE) are built once and interned, so encoding
+ * them allocates nothing; other values get a new literal.
+ */
+public final class LiteralEncoder {
+
+    public static final String XSD_INTEGER = "http://www.w3.org/2001/XMLSchema#integer";
+    public static final String XSD_BOOLEAN = "http://www.w3.org/2001/XMLSchema#boolean";
+    public static final String XSD_STRING = "http://www.w3.org/2001/XMLSchema#string";
+    public static final String XSD_DECIMAL = "http://www.w3.org/2001/XMLSchema#decimal";
+
+    public static final int NOT_A_BOOLEAN = -1;
+
+    private static final long INVALID = Long.MIN_VALUE;
+    private static final int CACHED_MAX = 100;
+    private static final String[] INTEGERS = new String[CACHED_MAX + 1];
+    private static final String TRUE = ("\"true\"^^" + XSD_BOOLEAN).intern();
+    private static final String FALSE = ("\"false\"^^" + XSD_BOOLEAN).intern();
+
+    private static final String[] TRUE_TOKENS = {"ON", "OPEN", "TRUE"};
+    private static final String[] FALSE_TOKENS = {"OFF", "CLOSE", "FALSE"};
+
+    static {
+        for (int i = 0; i <= CACHED_MAX; i++) {
+            INTEGERS[i] = build(Integer.toString(i), XSD_INTEGER).intern();
+        }
+    }
+
+    private LiteralEncoder() {
+    }
+
+    /** True if {@code s} is a decimal int, as accepted by {@link Integer#parseInt(String)}. */
+    public static boolean isInteger(CharSequence s) {
+        return s != null && parse(s) != INVALID;
+    }
+
+    /**
+     * Returns the boolean carried by an ON/OFF, OPEN/CLOSE or TRUE/FALSE token:
+     * 1, 0, or {@link #NOT_A_BOOLEAN}.
+     */
+    public static int booleanValue(CharSequence s) {
+        if (s == null) {
+            return NOT_A_BOOLEAN;
+        }
+        if (matchesAny(s, TRUE_TOKENS)) {
+            return 1;
+        }
+        if (matchesAny(s, FALSE_TOKENS)) {
+            return 0;
+        }
+        return NOT_A_BOOLEAN;
+    }
+
+    public static String integerLiteral(int value) {
+        if (value >= 0 && value <= CACHED_MAX) {
+            return INTEGERS[value];
+        }
+        return build(Integer.toString(value), XSD_INTEGER);
+    }
+
+    /** xsd:decimal literal in canonical form: no trailing zeros, at least one fraction digit. */
+    public static String decimalLiteral(BigDecimal value) {
+        String lexical = value.signum() == 0 ? "0" : value.stripTrailingZeros().toPlainString();
+        if (lexical.indexOf('.') < 0) {
+            lexical = lexical + ".0";
+        }
+        return build(lexical, XSD_DECIMAL);
+    }
+
+    public static String booleanLiteral(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    /** xsd:integer literal of {@code s}, or null if it is not an integer. */
+    public static String integer(CharSequence s) {
+        long value = s == null ? INVALID : parse(s);
+        return value == INVALID ? null : integerLiteral((int) value);
+    }
+
+    /**
+     * Value of an xsd:integer literal such as {@code "3"^^xsd:integer}, or {@code fallback}
+     * if {@code literal} is not one.
+     */
+    public static int integerValue(String literal, int fallback) {
+        int end = literal.length() - XSD_INTEGER.length() - 3;
+        if (end < 1 || literal.charAt(0) != '"' || !literal.startsWith("\"^^", end) || !literal.endsWith(XSD_INTEGER)) {
+            return fallback;
+        }
+        long value = parse(literal.subSequence(1, end));
+        return value == INVALID ? fallback : (int) value;
+    }
+
+    /** xsd:boolean literal of an ON/OFF-like token, or null if it is not one. */
+    public static String booleanToken(CharSequence s) {
+        int value = booleanValue(s);
+        return value == NOT_A_BOOLEAN ? null : booleanLiteral(value == 1);
+    }
+
+    /**
+     * Literal of any sensor value: integers as xsd:integer, ON/OFF-like tokens as the
+     * xsd:integer 100 or 0, anything else as xsd:string.
+     */
+    public static String encode(CharSequence s) {
+        String literal = integer(s);
+        if (literal != null) {
+            return literal;
+        }
+        int bool = booleanValue(s);
+        if (bool != NOT_A_BOOLEAN) {
+            return INTEGERS[bool == 1 ? 100 : 0];
+        }
+        return build(String.valueOf(s), XSD_STRING);
+    }
+
+    /** Parses a decimal int without throwing, or returns {@link #INVALID}. */
+    private static long parse(CharSequence s) {
+        int length = s.length();
+        if (length == 0) {
+            return INVALID;
+        }
+        int i = 0;
+        boolean negative = false;
+        char first = s.charAt(0);
+        if (first == '-' || first == '+') {
+            if (length == 1) {
+                return INVALID;
+            }
+            negative = first == '-';
+            i = 1;
+        }
+        // accumulate negatively so that Integer.MIN_VALUE is accepted
+        long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        long result = 0;
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            result = result * 10 - (c - '0');
+            if (result < limit) {
+                return INVALID;
+            }
+        }
+        return negative ? result : -result;
+    }
+
+    private static boolean matchesAny(CharSequence s, String[] tokens) {
+        for (String token : tokens) {
+            if (token.contentEquals(s)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String build(String lexical, String datatype) {
+        return "\"" + lexical + "\"^^" + datatype;
+    }
+}
@@ -0,0 +1,115 @@
+package eu.larkc.csparql.eu.tsp.test.literal;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats the xsd:dateTime literals of the observation time intervals
+ * (hasLowerTimeStampValue / hasUpperTimeStampValue), e.g.
+ * {@code "2009-02-02T07:15:16.575+01:00"^^http://www.w3.org/2001/XMLSchema#dateTime}, quoted
+ * as the literals of {@link LiteralEncoder}.
+ *
+ * The formatter is immutable and shared. The last literal is cached, as well as the
+ * formatted date and offset of the current second: within a second only the millis are
+ * rewritten, within a millisecond the same instance is returned. Safe for concurrent use.
+ */
+public final class TimestampLiterals {
+
+    public static final String XSD_DATE_TIME = "http://www.w3.org/2001/XMLSchema#dateTime";
+
+    private static final DateTimeFormatter SECONDS = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final DateTimeFormatter OFFSET = DateTimeFormatter.ofPattern("XXX");
+
+    /** Length of {@code "yyyy-MM-ddTHH:mm:ss.SSS}, where the offset starts. */
+    private static final int OFFSET_INDEX = 24;
+
+    private static final TimestampLiterals DEFAULT = new TimestampLiterals(ZoneId.systemDefault());
+
+    private final ZoneId zone;
+    private volatile Cached last = new Cached(Long.MIN_VALUE, Long.MIN_VALUE, null, null, null);
+
+    public TimestampLiterals(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /** Literals in the zone of the JVM. */
+    public static TimestampLiterals getDefault() {
+        return DEFAULT;
+    }
+
+    public String now() {
+        return dateTime(System.currentTimeMillis());
+    }
+
+    public String dateTime(long epochMillis) {
+        Cached cached = last;
+        if (cached.millis == epochMillis) {
+            return cached.literal;
+        }
+
+        long second = Math.floorDiv(epochMillis, 1000L);
+        int millis = (int) Math.floorMod(epochMillis, 1000L);
+        String prefix;
+        String suffix;
+        if (cached.second == second) {
+            prefix = cached.prefix;
+            suffix = cached.suffix;
+        } else {
+            ZonedDateTime time = Instant.ofEpochSecond(second).atZone(zone);
+            prefix = '"' + SECONDS.format(time) + '.';
+            suffix = OFFSET.format(time) + "\"^^" + XSD_DATE_TIME;
+        }
+
+        StringBuilder literal = new StringBuilder(prefix.length() + 3 + suffix.length());
+        literal.append(prefix)
+                .append((char) ('0' + millis / 100))
+                .append((char) ('0' + millis / 10 % 10))
+                .append((char) ('0' + millis % 10))
+                .append(suffix);
+        String value = literal.toString();
+        last = new Cached(epochMillis, second, prefix, suffix, value);
+        return value;
+    }
+
+    /**
+     * Compares two literals of this format by instant. Literals with the same offset are
+     * compared as text, without parsing.
+     */
+    public static int compare(String a, String b) {
+        if (a.length() == b.length() && a.length() > OFFSET_INDEX
+                && a.regionMatches(OFFSET_INDEX, b, OFFSET_INDEX, a.length() - OFFSET_INDEX)) {
+            return a.compareTo(b);
+        }
+        return Long.compare(epochMillis(a), epochMillis(b));
+    }
+
+    /** Instant of a literal of this format. */
+    public static long epochMillis(String literal) {
+        int end = literal.indexOf("^^");
+        String lexical = end < 0 ? literal : literal.substring(0, end);
+        if (lexical.startsWith("\"")) {
+            lexical = lexical.substring(1, lexical.length() - 1);
+        }
+        return OffsetDateTime.parse(lexical).toInstant().toEpochMilli();
+    }
+
+    private static final class Cached {
+
+        final long millis;
+        final long second;
+        final String prefix;
+        final String suffix;
+        final String literal;
+
+        Cached(long millis, long second, String prefix, String suffix, String literal) {
+            this.millis = millis;
+            this.second = second;
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.literal = literal;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package eu.larkc.csparql.eu.tsp.test.operator;
+
+import eu.larkc.csparql.cep.api.RdfStream;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Recognizes the aggregate-over-observation queries and compiles them into an
+ * {@link ObservationWindowOperator}, which keeps running sums, counts, minimums and maximums
+ * per group as the triples arrive instead of joining and grouping the whole window at every
+ * step: the cleantv queries of ECareHome and tvAgent into a {@link ComplexEventAggregator},
+ * the cleancouch query of ECareHome and couchAgent into a {@link BooleanRatioAggregator}.
+ *
+ * Recognized cleantv shape, whitespace aside:
+ * <pre>
+ * REGISTER STREAM name AS PREFIX ...
+ * CONSTRUCT { the ComplexEvent template, optionally with ?sensorLibelle and ?location }
+ * FROM STREAM &lt;input&gt; [RANGE r STEP r]
+ * WHERE { { SELECT ?sensor [?sensorLibelle ?location] (AVG(?value) AS ?avg)
+ *                  (MAX(?upper) AS ?maxTime) (MIN(?lower) AS ?minTime)
+ *           WHERE { one observation pattern } GROUP BY ?sensor [?sensorLibelle ?location] }
+ *         BIND (if ((?avg &lt; N), false, true) AS ?value) | BIND (?avg AS ?value)
+ *         [BIND (now() AS ?time)] [FILTER bound(?sensor)] }
+ * </pre>
+ * The cleancouch query is recognized as written, up to whitespace, the registered name, the
+ * input stream and the tumbling range.
+ * Any other query is left to the engine: {@link #recognize(String)} returns null.
+ */
+public final class AggregateQueryRecognizer {
+
+    private static final Pattern REGISTER = Pattern.compile("^REGISTER STREAM (\\w+) AS ");
+    private static final Pattern PREFIX = Pattern.compile("PREFIX (\\w*): ?<([^>]*)> ");
+    private static final Pattern BODY = Pattern.compile(
+            "CONSTRUCT \\{ (.*?) \\} FROM STREAM <([^>]+)> \\[RANGE (\\d+)(ms|s|m|h|d) STEP (\\d+)(ms|s|m|h|d)\\] WHERE "
+                    + "\\{ \\{ SELECT \\?sensor( \\?sensorLibelle \\?location)? \\(AVG \\(\\?value\\) AS \\?avg\\) "
+                    + "\\(MAX \\(\\?upper\\) AS \\?maxTime\\) \\(MIN \\(\\?lower\\) AS \\?minTime\\) "
+                    + "WHERE \\{ (.*?) \\} GROUP BY \\?sensor( \\?sensorLibelle \\?location)? \\} (.*)\\}$");
+    private static final Pattern THRESHOLD = Pattern.compile("^BIND \\(if \\(\\(\\?avg < ?(-?\\d+(?:\\.\\d+)?)\\), false, true\\) AS \\?value\\)");
+    private static final String AVERAGE = "BIND (?avg AS ?value)";
+    private static final String[] IGNORED = {"BIND (now() AS ?time)", "FILTER bound (?sensor)"};
+    private static final Pattern BOOLEAN_RATIO = Pattern.compile(
+            "CONSTRUCT \\{ (.*?) \\} FROM STREAM <([^>]+)> \\[RANGE (\\d+)(ms|s|m|h|d) STEP (\\d+)(ms|s|m|h|d)\\] WHERE \\{ "
+                    + Pattern.quote("{ SELECT ?sensor (MAX (?upper) AS ?maxTime) (MIN (?lower) AS ?minTime) "
+                    + "WHERE { _:b0 sosa:isObservedBy ?sensor ; dul:isObservableAt _:b1 . "
+                    + "_:b1 time:hasUpperTimeStampValue ?upper ; time:hasLowerTimeStampValue ?lower . } GROUP BY ?sensor } "
+                    + "{ SELECT ?sensor (COUNT(?sensor) AS ?isTrue) "
+                    + "WHERE { _:b2 sosa:isObservedBy ?sensor ; sosa:hasSimpleResult true . } GROUP BY ?sensor } "
+                    + "{ SELECT ?sensor (COUNT(?sensor) AS ?isFalse) "
+                    + "WHERE { _:b3 sosa:isObservedBy ?sensor ; sosa:hasSimpleResult false . } GROUP BY ?sensor } "
+                    + "BIND ((?isTrue/(?isTrue + ?isFalse)) AS ?avg) "
+                    + "BIND (if ((?avg >= 0.9), true, if ((?avg <0.1), false, if ((?avg <0.8), true,?avg))) AS ?value) ")
+                    + "(BIND \\(now\\(\\) AS \\?time\\) )?\\}$");
+
+    private static final String[] EVENT_TEMPLATE = {
+            "_:c0 rdf:type event:ComplexEvent",
+            "_:c0 dul:isObservableAt _:c1",
+            "_:c0 sosa:isObservedBy ?sensor",
+            "_:c0 sosa:hasSimpleResult ?value",
+            "_:c1 rdf:type dul:TimeInterval",
+            "_:c1 time:hasUpperTimeStampValue ?maxTime",
+            "_:c1 time:hasLowerTimeStampValue ?minTime"};
+    private static final String[] DETAILS_TEMPLATE = {
+            "_:c0 sosa:madeBySensor ?sensorLibelle",
+            "_:c0 dul:hasLocation ?location"};
+    private static final String[] OBSERVATION_PATTERN = {
+            "_:b0 sosa:isObservedBy ?sensor",
+            "_:b0 sosa:hasSimpleResult ?value",
+            "_:b0 dul:isObservableAt _:b1",
+            "_:b1 time:hasUpperTimeStampValue ?upper",
+            "_:b1 time:hasLowerTimeStampValue ?lower"};
+    private static final String[] DETAILS_PATTERN = {
+            "_:b0 sosa:madeBySensor ?sensorLibelle",
+            "_:b0 dul:hasLocation ?location"};
+
+    private static final String RDF = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final String DUL = "http://www.ontologydesignpatterns.org/ont/dul/DUL.owl#";
+    private static final String TIME = "http://w3id.org/ecareathome/patterns/timeinterval.owl#";
+    private static final String EVENT = "http://w3id.org/ecareathome/patterns/event.owl#";
+
+    private AggregateQueryRecognizer() {
+    }
+
+    /**
+     * Compiles {@code query} into an aggregator publishing the stream the query registers
+     * ({@code :name}, or {@code name} without default prefix), or returns null if the query
+     * does not have the recognized shape.
+     */
+    public static ObservationWindowOperator recognize(String query) {
+        Recognized recognized = parse(query);
+        return recognized != null ? recognized.aggregator : null;
+    }
+
+    /**
+     * Compiles {@code query} and attaches the aggregator to {@code input}, if the query is
+     * recognized and reads {@code input} only. The aggregator must then be registered in the
+     * engine and started in place of the query. Aggregators attached to the same stream with
+     * the same range share one window ({@link ObservationWindowOperator#share(RdfStream)}).
+     *
+     * @return the aggregator, or null when the query must be registered in the engine
+     */
+    public static ObservationWindowOperator attach(String query, RdfStream input) {
+        Recognized recognized = parse(query);
+        if (recognized == null || !recognized.input.equals(input.getIRI())) {
+            return null;
+        }
+        recognized.aggregator.share(input);
+        return recognized.aggregator;
+    }
+
+    private static Recognized parse(String query) {
+        String q = normalize(query);
+
+        Matcher register = REGISTER.matcher(q);
+        if (!register.find()) {
+            return null;
+        }
+        String name = register.group(1);
+        int position = register.end();
+
+        String defaultPrefix = null;
+        String sosa = null;
+        Matcher prefix = PREFIX.matcher(q);
+        while (prefix.find(position) && prefix.start() == position) {
+            String label = prefix.group(1);
+            String namespace = prefix.group(2);
+            if (label.isEmpty()) {
+                defaultPrefix = namespace;
+            } else if (label.equals("sosa")) {
+                sosa = namespace;
+            } else if (!isExpected(label, namespace)) {
+                return null;
+            }
+            position = prefix.end();
+        }
+        if (sosa == null) {
+            return null;
+        }
+
+        String iri = defaultPrefix != null ? defaultPrefix + name : name;
+        Recognized recognized = average(q, position, iri, sosa);
+        return recognized != null ? recognized : booleanRatio(q, position, iri, sosa);
+    }
+
+    private static Recognized average(String q, int position, String iri, String sosa) {
+        Matcher body = BODY.matcher(q);
+        if (!body.find(position) || body.start() != position) {
+            return null;
+        }
+        boolean details = body.group(7) != null;
+        if (details != (body.group(9) != null)) {
+            return null;
+        }
+        long range = tumblingRange(body);
+        if (range <= 0) {
+            return null;
+        }
+        if (!sameTriples(body.group(1), EVENT_TEMPLATE, details ? DETAILS_TEMPLATE : null)
+                || !sameTriples(body.group(8), OBSERVATION_PATTERN, details ? DETAILS_PATTERN : null)) {
+            return null;
+        }
+
+        String tail = body.group(10);
+        Double threshold = null;
+        Matcher bind = THRESHOLD.matcher(tail);
+        if (bind.find()) {
+            threshold = Double.valueOf(bind.group(1));
+            tail = tail.substring(bind.end());
+        } else if (tail.startsWith(AVERAGE)) {
+            tail = tail.substring(AVERAGE.length());
+        } else {
+            return null;
+        }
+        for (String ignored : IGNORED) {
+            tail = tail.replace(ignored, "");
+        }
+        if (!tail.trim().isEmpty()) {
+            return null;
+        }
+
+        ComplexEventAggregator aggregator = new ComplexEventAggregator(iri, sosa, range);
+        aggregator.setSensorDetails(details);
+        if (threshold != null) {
+            aggregator.setThreshold(threshold);
+        }
+        return new Recognized(body.group(2), aggregator);
+    }
+
+    private static Recognized booleanRatio(String q, int position, String iri, String sosa) {
+        Matcher body = BOOLEAN_RATIO.matcher(q);
+        if (!body.find(position) || body.start() != position) {
+            return null;
+        }
+        long range = tumblingRange(body);
+        if (range <= 0 || !sameTriples(body.group(1), EVENT_TEMPLATE, null)) {
+            return null;
+        }
+        return new Recognized(body.group(2), new BooleanRatioAggregator(iri, sosa, range));
+    }
+
+    /** RANGE of a window whose STEP is the same, in ms, or 0. */
+    private static long tumblingRange(Matcher window) {
+        long range = millis(window.group(3), window.group(4));
+        return range == millis(window.group(5), window.group(6)) ? range : 0;
+    }
+
+    /** Single spaces, none inside parentheses and brackets nor before commas, spaced braces. */
+    private static String normalize(String query) {
+        return query.replaceAll("([{}])", " $1 ")
+                .replaceAll("\\s+", " ")
+                .replaceAll("([(\\[]) ", "$1")
+                .replaceAll(" ([)\\],])", "$1")
+                .trim();
+    }
+
+    /** The prefixes the patterns use must have their usual namespace. */
+    private static boolean isExpected(String label, String namespace) {
+        if (label.equals("rdf")) {
+            return namespace.equals(RDF);
+        } else if (label.equals("dul")) {
+            return namespace.equals(DUL);
+        } else if (label.equals("time")) {
+            return namespace.equals(TIME);
+        } else if (label.equals("event")) {
+            return namespace.equals(EVENT);
+        }
+        // prefixes the patterns do not use (xsd...)
+        return true;
+    }
+
+    /** Compares the triples of a group pattern, in any order and with ';' shorthands expanded. */
+    private static boolean sameTriples(String group, String[] expected, String[] extra) {
+        Set<String> triples = new HashSet<String>();
+        for (String statement : group.split(" ?\\. ?")) {
+            String[] parts = statement.trim().split(" ?; ?");
+            String[] first = parts[0].trim().split(" ");
+            if (first.length != 3) {
+                return false;
+            }
+            String subject = first[0];
+            triples.add(subject + " " + first[1] + " " + first[2]);
+            for (int i = 1; i < parts.length; i++) {
+                String[] po = parts[i].trim().split(" ");
+                if (po.length == 1 && po[0].isEmpty()) {
+                    continue;
+                }
+                if (po.length != 2) {
+                    return false;
+                }
+                triples.add(subject + " " + po[0] + " " + po[1]);
+            }
+        }
+        triples.remove("");
+        Set<String> wanted = new HashSet<String>(Arrays.asList(expected));
+        if (extra != null) {
+            wanted.addAll(Arrays.asList(extra));
+        }
+        return triples.equals(wanted);
+    }
+
+    private static long millis(String value, String unit) {
+        long amount = Long.parseLong(value);
+        switch (unit.toLowerCase(Locale.ROOT)) {
+            case "ms":
+                return amount;
+            case "s":
+                return amount * 1000L;
+            case "m":
+                return amount * 60000L;
+            case "h":
+                return amount * 3600000L;
+            default:
+                return amount * 86400000L;
+        }
+    }
+
+    private static final class Recognized {
+
+        final String input;
+        final ObservationWindowOperator aggregator;
+
+        Recognized(String input, ObservationWindowOperator aggregator) {
+            this.input = input;
+            this.aggregator = aggregator;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package eu.larkc.csparql.eu.tsp.test.operator;
+
+import eu.larkc.csparql.eu.tsp.test.literal.LiteralEncoder;
+import eu.larkc.csparql.eu.tsp.test.literal.TimestampLiterals;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-Java equivalent of the cleancouch query: per sensor and tumbling window, the number of
+ * true and of false results and the earliest lower / latest upper timestamp, all computed in
+ * one pass over the observations instead of three grouped subqueries joined on ?sensor.
+ *
+ * As with the join, a sensor gets an event only if the window holds at least one true and
+ * one false result and one observation with its time interval. The value is thresholded on
+ * {@code ?avg = ?isTrue / (?isTrue + ?isFalse)}: true when {@code ?avg >= 0.9}, false when
+ * {@code ?avg < 0.1}, true when {@code ?avg < 0.8}, else ?avg itself as an xsd:decimal.
+ * The thresholds are compared on the exact counts.
+ *
+ * A debounced observation ({@link eu.larkc.csparql.eu.tsp.test.streamer.HomeStreamer#setDebounceInterval(long)})
+ * counts as the number of readings it carries in {@code ECARE_READING_COUNT}, so the ratio
+ * is that of the readings whether or not they were coalesced; the engine query would count
+ * it once.
+ */
+public class BooleanRatioAggregator extends ObservationWindowOperator {
+
+    private static final int COUNTED = 1;
+    private static final int TIMED = 2;
+    /** the count of a debounced observation is folded in */
+    private static final int WEIGHED = 4;
+    private static final int DIVIDE_SCALE = 24;
+
+    private static final String TRUE = LiteralEncoder.booleanLiteral(true);
+    private static final String FALSE = LiteralEncoder.booleanLiteral(false);
+
+    private final Map<String, Counts> sensors = new LinkedHashMap<String, Counts>();
+
+    /**
+     * @param iri          IRI of the ComplexEvent stream, e.g. {@code http://ecareathome.org/stream#cleancouch}
+     * @param sosa         namespace of the sosa properties of the upstream observations
+     * @param rangeMillis  length of the tumbling window
+     */
+    public BooleanRatioAggregator(String iri, String sosa, long rangeMillis) {
+        super(iri, sosa, rangeMillis);
+    }
+
+    @Override
+    protected boolean fold(Observation observation) {
+        if (observation.sensor == null) {
+            return false;
+        }
+        Counts counts = null;
+        if ((observation.folded & COUNTED) == 0 && observation.value != null) {
+            counts = counts(observation.sensor);
+            counts.add(observation.value, observation.readings());
+            observation.folded |= observation.count > 0 ? COUNTED | WEIGHED : COUNTED;
+        } else if ((observation.folded & (COUNTED | WEIGHED)) == COUNTED && observation.count > 0) {
+            // counted once before its count arrived
+            counts = counts(observation.sensor);
+            counts.add(observation.value, observation.count - 1);
+            observation.folded |= WEIGHED;
+        }
+        if ((observation.folded & TIMED) == 0 && observation.hasInterval()) {
+            if (counts == null) {
+                counts = counts(observation.sensor);
+            }
+            if (counts.minTime == null || TimestampLiterals.compare(observation.lower, counts.minTime) < 0) {
+                counts.minTime = observation.lower;
+            }
+            if (counts.maxTime == null || TimestampLiterals.compare(observation.upper, counts.maxTime) > 0) {
+                counts.maxTime = observation.upper;
+            }
+            observation.folded |= TIMED;
+        }
+        if (counts != null) {
+            counts.origin = Math.min(counts.origin, observation.timestamp);
+        }
+        return (observation.folded & (COUNTED | TIMED)) == (COUNTED | TIMED);
+    }
+
+    @Override
+    protected void publishWindow() {
+        for (Map.Entry<String, Counts> entry : sensors.entrySet()) {
+            Counts counts = entry.getValue();
+            if (counts.trueCount > 0 && counts.falseCount > 0 && counts.minTime != null) {
+                publishEvent(counts.origin, entry.getKey(), counts.value(), counts.minTime, counts.maxTime);
+            }
+        }
+        sensors.clear();
+    }
+
+    private Counts counts(String sensor) {
+        Counts counts = sensors.get(sensor);
+        if (counts == null) {
+            counts = new Counts();
+            sensors.put(sensor, counts);
+        }
+        return counts;
+    }
+
+    /** Aggregates of one sensor in the open window. */
+    private static final class Counts {
+
+        long trueCount;
+        long falseCount;
+        String minTime;
+        String maxTime;
+        /** timestamp of the earliest upstream observation counted in */
+        long origin = Long.MAX_VALUE;
+
+        void add(String value, int readings) {
+            if (TRUE.equals(value)) {
+                trueCount += readings;
+            } else if (FALSE.equals(value)) {
+                falseCount += readings;
+            }
+        }
+
+        String value() {
+            long total = trueCount + falseCount;
+            if (10 * trueCount >= 9 * total) {
+                return TRUE;
+            }
+            if (10 * trueCount < total) {
+                return FALSE;
+            }
+            if (10 * trueCount < 8 * total) {
+                return TRUE;
+            }
+            BigDecimal ratio = BigDecimal.valueOf(trueCount).divide(BigDecimal.valueOf(total), DIVIDE_SCALE, RoundingMode.FLOOR);
+            return LiteralEncoder.decimalLiteral(ratio);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package eu.larkc.csparql.eu.tsp.test.operator;
+
+import eu.larkc.csparql.eu.tsp.test.literal.LiteralEncoder;
+import eu.larkc.csparql.eu.tsp.test.literal.TimestampLiterals;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-Java equivalent of the cleantv query: per sensor and 10s tumbling window, the average
+ * value and the earliest lower / latest upper timestamp of the observations, published as
+ * the same ComplexEvent triples as the CONSTRUCT
+ * <pre>
+ * _:c0 rdf:type event:ComplexEvent ; dul:isObservableAt _:c1 ;
+ *      sosa:isObservedBy ?sensor ; sosa:hasSimpleResult ?value .
+ * _:c1 rdf:type dul:TimeInterval ;
+ *      time:hasUpperTimeStampValue ?maxTime ; time:hasLowerTimeStampValue ?minTime .
+ * </pre>
+ *
+ * Only the running aggregates of the open window and the observations whose triples have not
+ * all arrived yet are kept, whatever the rate of the upstream stream.
+ *
+ * The average is divided as by the engine's decimal division, truncated (FLOOR) at 24
+ * digits, so a non-terminating average such as 2/3 gives the same literal.
+ *
+ * Known difference with the engine: windows are aligned on multiples of the range in epoch
+ * time, whereas the engine aligns its windows on the registration of the query. Both paths
+ * give the same events for the same window contents, but an observation near a boundary may
+ * fall in a different window.
+ */
+public class ComplexEventAggregator extends ObservationWindowOperator {
+
+    private static final int AVERAGE_SCALE = 24;
+
+    private boolean sensorDetails;
+    private BigDecimal threshold;
+    private final Map<String, Group> groups = new LinkedHashMap<String, Group>();
+
+    /**
+     * @param iri          IRI of the ComplexEvent stream, e.g. {@code http://ecareathome.org/stream#cleantv}
+     * @param sosa         namespace of the sosa properties of the upstream observations
+     * @param rangeMillis  length of the tumbling window
+     */
+    public ComplexEventAggregator(String iri, String sosa, long rangeMillis) {
+        super(iri, sosa, rangeMillis);
+    }
+
+    /**
+     * Publishes {@code false} when the average is below {@code threshold} and {@code true}
+     * otherwise, as {@code BIND (if ((?avg < 20), false, true) AS ?value)}, instead of the
+     * average itself.
+     */
+    public synchronized void setThreshold(double threshold) {
+        this.threshold = BigDecimal.valueOf(threshold);
+    }
+
+    /**
+     * Also groups by, and publishes, the sensor type (sosa:madeBySensor) and location
+     * (dul:hasLocation) of the observations, as the cleantv query of ECareHome does.
+     */
+    public synchronized void setSensorDetails(boolean sensorDetails) {
+        this.sensorDetails = sensorDetails;
+    }
+
+    @Override
+    protected boolean fold(Observation observation) {
+        if (observation.sensor == null || observation.value == null || !observation.hasInterval()
+                || sensorDetails && (observation.type == null || observation.location == null)) {
+            return false;
+        }
+        String key = sensorDetails
+                ? observation.sensor + ' ' + observation.type + ' ' + observation.location
+                : observation.sensor;
+        Group group = groups.get(key);
+        if (group == null) {
+            group = new Group(observation);
+            groups.put(key, group);
+        }
+        group.add(observation.value);
+        group.origin = Math.min(group.origin, observation.timestamp);
+        if (group.minTime == null || TimestampLiterals.compare(observation.lower, group.minTime) < 0) {
+            group.minTime = observation.lower;
+        }
+        if (group.maxTime == null || TimestampLiterals.compare(observation.upper, group.maxTime) > 0) {
+            group.maxTime = observation.upper;
+        }
+        return true;
+    }
+
+    @Override
+    protected void publishWindow() {
+        for (Group group : groups.values()) {
+            String value = group.value(threshold);
+            if (sensorDetails) {
+                publishEvent(group.origin, group.sensor, value, group.minTime, group.maxTime,
+                        madeBySensor, group.type, DUL_HAS_LOCATION, group.location);
+            } else {
+                publishEvent(group.origin, group.sensor, value, group.minTime, group.maxTime);
+            }
+        }
+        groups.clear();
+    }
+
+    /** Running aggregates of one sensor in the open window. */
+    private static final class Group {
+
+        final String sensor;
+        final String type;
+        final String location;
+        long count;
+        long integerSum;
+        BigDecimal decimalSum;
+        boolean notNumeric;
+        String minTime;
+        String maxTime;
+        /** timestamp of the earliest upstream observation folded in */
+        long origin = Long.MAX_VALUE;
+
+        Group(Observation observation) {
+            this.sensor = observation.sensor;
+            this.type = observation.type;
+            this.location = observation.location;
+        }
+
+        void add(String literal) {
+            count++;
+            String lexical = lexical(literal);
+            if (LiteralEncoder.isInteger(lexical) && lexical.length() < 10) {
+                integerSum += Integer.parseInt(lexical);
+                return;
+            }
+            try {
+                BigDecimal value = new BigDecimal(lexical);
+                decimalSum = decimalSum == null ? value : decimalSum.add(value);
+            } catch (NumberFormatException e) {
+                // AVG of a non-numeric value is an error: ?value is left unbound
+                notNumeric = true;
+            }
+        }
+
+        /** The literal of ?value, or null when it is unbound. */
+        String value(BigDecimal threshold) {
+            if (notNumeric) {
+                return null;
+            }
+            BigDecimal sum = BigDecimal.valueOf(integerSum);
+            if (decimalSum != null) {
+                sum = sum.add(decimalSum);
+            }
+            BigDecimal average = sum.divide(BigDecimal.valueOf(count), AVERAGE_SCALE, RoundingMode.FLOOR);
+            if (threshold != null) {
+                return LiteralEncoder.booleanLiteral(average.compareTo(threshold) >= 0);
+            }
+            return LiteralEncoder.decimalLiteral(average);
+        }
+
+        private static String lexical(String literal) {
+            if (literal.startsWith("\"")) {
+                int end = literal.indexOf('"', 1);
+                if (end > 0) {
+                    return literal.substring(1, end);
+                }
+            }
+            return literal;
+        }
+    }
+}
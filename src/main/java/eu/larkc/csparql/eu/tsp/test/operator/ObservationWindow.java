@@ -0,0 +1,251 @@
+package eu.larkc.csparql.eu.tsp.test.operator;
+
+import eu.larkc.csparql.cep.api.RdfQuadruple;
+import eu.larkc.csparql.cep.api.RdfStream;
+import eu.larkc.csparql.eu.tsp.test.literal.LiteralEncoder;
+import eu.larkc.csparql.eu.tsp.test.operator.ObservationWindowOperator.Observation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+
+import static eu.larkc.csparql.eu.tsp.test.streamer.ObservationStream.DUL_HAS_LOCATION;
+import static eu.larkc.csparql.eu.tsp.test.streamer.ObservationStream.DUL_IS_OBSERVABLE_AT;
+import static eu.larkc.csparql.eu.tsp.test.streamer.ObservationStream.ECARE_READING_COUNT;
+import static eu.larkc.csparql.eu.tsp.test.streamer.ObservationStream.TIME_HAS_LOWER_TIMESTAMP;
+import static eu.larkc.csparql.eu.tsp.test.streamer.ObservationStream.TIME_HAS_UPPER_TIMESTAMP;
+
+/**
+ * The tumbling window of {@link ObservationWindowOperator}s: joins the triples of each
+ * observation into an {@link Observation}, hands it to the {@code fold} of each operator and
+ * closes the window for all of them at once.
+ *
+ * An operator alone gets a window of its own. The operators that read the same stream with
+ * the same range and sosa namespace ({@link #acquire(RdfStream, ObservationWindowOperator)})
+ * share one window, which observes the stream in their place: the observations being joined
+ * are held once per distinct window, not once per operator. The window is reference counted
+ * and stops observing the stream when its last operator is {@link #release(ObservationWindowOperator) released}.
+ */
+final class ObservationWindow implements Observer {
+
+    /** Shared windows, by input stream. */
+    private static final Map<RdfStream, List<ObservationWindow>> SHARED = new IdentityHashMap<RdfStream, List<ObservationWindow>>();
+
+    private final RdfStream input;
+    private final String sosa;
+    private final long range;
+    private final String isObservedBy;
+    private final String hasSimpleResult;
+    private final String madeBySensor;
+
+    /**
+     * Subscribed operators; a released one leaves a null, so the slots of the others stay put,
+     * and the next operator subscribed takes the free slot.
+     */
+    private final List<ObservationWindowOperator> operators = new ArrayList<ObservationWindowOperator>(2);
+    private int references;
+
+    /** Observations not folded yet, by observation node and by time interval node. */
+    private final Map<String, Observation> pending = new HashMap<String, Observation>();
+    private long windowEnd = Long.MIN_VALUE;
+
+    ObservationWindow(RdfStream input, String sosa, long range) {
+        this.input = input;
+        this.sosa = sosa;
+        this.range = range;
+        this.isObservedBy = sosa + "isObservedBy";
+        this.hasSimpleResult = sosa + "hasSimpleResult";
+        this.madeBySensor = sosa + "madeBySensor";
+    }
+
+    /**
+     * Subscribes {@code operator} to the window of {@code input} with its range and sosa
+     * namespace, creating the window and adding it as an observer of {@code input} if no other
+     * operator reads it yet.
+     */
+    static ObservationWindow acquire(RdfStream input, ObservationWindowOperator operator) {
+        ObservationWindow window = null;
+        synchronized (SHARED) {
+            List<ObservationWindow> windows = SHARED.get(input);
+            if (windows == null) {
+                windows = new ArrayList<ObservationWindow>(2);
+                SHARED.put(input, windows);
+            }
+            for (ObservationWindow candidate : windows) {
+                if (candidate.range == operator.range && candidate.sosa.equals(operator.sosa)) {
+                    window = candidate;
+                }
+            }
+            if (window == null) {
+                window = new ObservationWindow(input, operator.sosa, operator.range);
+                windows.add(window);
+                input.addObserver(window);
+            }
+            window.subscribe(operator);
+        }
+        return window;
+    }
+
+    /**
+     * Unsubscribes {@code operator}; the last one removes the window from its input stream.
+     * The state the operator had not published yet is discarded.
+     */
+    void release(ObservationWindowOperator operator) {
+        synchronized (SHARED) {
+            if (!unsubscribe(operator) || input == null) {
+                return;
+            }
+            List<ObservationWindow> windows = SHARED.get(input);
+            if (windows != null && windows.remove(this) && windows.isEmpty()) {
+                SHARED.remove(input);
+            }
+            input.deleteObserver(this);
+        }
+    }
+
+    synchronized void subscribe(ObservationWindowOperator operator) {
+        int slot = operators.indexOf(null);
+        if (slot >= 0) {
+            operators.set(slot, operator);
+        } else {
+            operators.add(operator);
+        }
+        references++;
+    }
+
+    /** @return true when no operator is left */
+    private synchronized boolean unsubscribe(ObservationWindowOperator operator) {
+        int slot = operators.indexOf(operator);
+        if (slot >= 0) {
+            operators.set(slot, null);
+            references--;
+            // the next operator in this slot starts from nothing
+            for (Observation observation : pending.values()) {
+                observation.setFolded(slot, 0, false);
+            }
+        }
+        return references == 0;
+    }
+
+    synchronized int getReferences() {
+        return references;
+    }
+
+    public void update(Observable upstream, Object data) {
+        if (data instanceof RdfQuadruple) {
+            add((RdfQuadruple) data);
+        }
+    }
+
+    /** Joins one upstream quad into its observation, in the current window. */
+    synchronized void add(RdfQuadruple q) {
+        long timestamp = q.getTimestamp();
+        if (timestamp >= windowEnd) {
+            closeWindow();
+            windowEnd = (Math.floorDiv(timestamp, range) + 1) * range;
+        }
+
+        String subject = q.getSubject();
+        String predicate = q.getPredicate();
+        String object = q.getObject();
+        if (!isJoined(predicate)) {
+            return;
+        }
+
+        Observation observation = pending.get(subject);
+        if (observation == null) {
+            observation = new Observation(timestamp);
+            pending.put(subject, observation);
+        }
+
+        if (predicate.equals(DUL_IS_OBSERVABLE_AT)) {
+            Observation interval = pending.get(object);
+            if (interval != null && interval != observation) {
+                observation.upper = interval.upper;
+                observation.lower = interval.lower;
+            }
+            observation.node = subject;
+            observation.interval = object;
+            pending.put(object, observation);
+        } else if (predicate.equals(isObservedBy)) {
+            observation.node = subject;
+            observation.sensor = object;
+        } else if (predicate.equals(hasSimpleResult)) {
+            observation.value = object;
+        } else if (predicate.equals(madeBySensor)) {
+            observation.type = object;
+        } else if (predicate.equals(DUL_HAS_LOCATION)) {
+            observation.location = object;
+        } else if (predicate.equals(ECARE_READING_COUNT)) {
+            observation.count = LiteralEncoder.integerValue(object, 0);
+        } else if (predicate.equals(TIME_HAS_UPPER_TIMESTAMP)) {
+            observation.upper = object;
+        } else {
+            observation.lower = object;
+        }
+
+        if (fold(observation)) {
+            pending.remove(observation.node);
+            pending.remove(observation.interval);
+        }
+    }
+
+    /** Publishes the result of the open window now, for every operator. */
+    synchronized void flush() {
+        closeWindow();
+    }
+
+    synchronized void tick() {
+        long now = System.currentTimeMillis();
+        if (windowEnd != Long.MIN_VALUE && now >= windowEnd) {
+            closeWindow();
+            windowEnd = (Math.floorDiv(now, range) + 1) * range;
+        }
+    }
+
+    /** @return true when every operator is done with the observation */
+    private boolean fold(Observation observation) {
+        boolean done = true;
+        for (int slot = 0; slot < operators.size(); slot++) {
+            ObservationWindowOperator operator = operators.get(slot);
+            if (operator != null && !observation.isDone(slot)) {
+                observation.folded = observation.getFolded(slot);
+                boolean operatorDone = operator.fold(observation);
+                observation.setFolded(slot, observation.folded, operatorDone);
+                done &= operatorDone;
+            }
+        }
+        return done;
+    }
+
+    private boolean isJoined(String predicate) {
+        return predicate.equals(DUL_IS_OBSERVABLE_AT) || predicate.equals(isObservedBy)
+                || predicate.equals(hasSimpleResult) || predicate.equals(madeBySensor)
+                || predicate.equals(DUL_HAS_LOCATION) || predicate.equals(ECARE_READING_COUNT)
+                || predicate.equals(TIME_HAS_UPPER_TIMESTAMP) || predicate.equals(TIME_HAS_LOWER_TIMESTAMP);
+    }
+
+    private void closeWindow() {
+        for (ObservationWindowOperator operator : operators) {
+            if (operator != null) {
+                operator.publishWindow();
+            }
+        }
+
+        if (windowEnd == Long.MIN_VALUE) {
+            return;
+        }
+        // observations still missing triples after a whole window never will be complete
+        long oldest = windowEnd - 2 * range;
+        for (Iterator<Observation> it = pending.values().iterator(); it.hasNext(); ) {
+            if (it.next().timestamp < oldest) {
+                it.remove();
+            }
+        }
+    }
+}
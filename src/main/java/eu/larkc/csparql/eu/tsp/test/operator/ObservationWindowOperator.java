@@ -0,0 +1,241 @@
+package eu.larkc.csparql.eu.tsp.test.operator;
+
+import eu.larkc.csparql.cep.api.RdfQuadruple;
+import eu.larkc.csparql.cep.api.RdfStream;
+import eu.larkc.csparql.eu.tsp.test.streamer.ObservationStream;
+import eu.larkc.csparql.runtime.PeriodicProducer;
+
+import java.util.Arrays;
+import java.util.Observable;
+import java.util.Observer;
+
+/**
+ * Base of the operators that replace a windowed query over observations: they observe the
+ * upstream stream ({@code upstream.addObserver(operator)}), fold each observation into
+ * per-window state as its triples arrive and, at every window boundary, publish their result
+ * as ComplexEvent triples on their own stream, which is registered in the engine in place of
+ * the {@code REGISTER STREAM} query.
+ *
+ * The triples of each observation are joined here, in any order, into an {@link Observation}
+ * handed to {@link #fold(Observation)} after each of its triples. Windows are tumbling,
+ * aligned on multiples of the range in epoch time, on the timestamps of the upstream quads;
+ * a window is closed by the first quad of the next one or, once {@link #start() started},
+ * by the clock. The join and the window are kept by an {@link ObservationWindow}, shared by
+ * the operators reading the same stream with the same range when they {@link #share(RdfStream)} it.
+ *
+ * Published events keep the timestamp of the earliest upstream quad they were computed from,
+ * not the time of the window close, so that the end-to-end latency of a chain of operators
+ * stays measurable on its last stream (see {@link eu.larkc.csparql.runtime.LatencyProbe}).
+ */
+public abstract class ObservationWindowOperator extends ObservationStream implements Observer, PeriodicProducer {
+
+    /** sosa namespace of TvStreamer and CouchStreamer. */
+    public static final String SOSA_HASH = "http://www.w3.org/ns/sosa#";
+    /** sosa namespace of the HomeStreamers. */
+    public static final String SOSA_SLASH = "http://www.w3.org/ns/sosa/";
+
+    public static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+    public static final String EVENT_COMPLEX_EVENT = "http://w3id.org/ecareathome/patterns/event.owl#ComplexEvent";
+    public static final String DUL_TIME_INTERVAL = "http://www.ontologydesignpatterns.org/ont/dul/DUL.owl#TimeInterval";
+
+    protected final long range;
+    protected final String isObservedBy;
+    protected final String hasSimpleResult;
+    protected final String madeBySensor;
+    final String sosa;
+
+    private ObservationWindow window;
+
+    /**
+     * @param iri          IRI of the published stream, e.g. {@code http://ecareathome.org/stream#cleantv}
+     * @param sosa         namespace of the sosa properties of the upstream observations
+     * @param rangeMillis  length of the tumbling window
+     */
+    protected ObservationWindowOperator(String iri, String sosa, long rangeMillis) {
+        super(iri);
+        if (rangeMillis <= 0) {
+            throw new IllegalArgumentException("Window range must be positive: " + rangeMillis);
+        }
+        this.range = rangeMillis;
+        this.sosa = sosa;
+        this.isObservedBy = sosa + "isObservedBy";
+        this.hasSimpleResult = sosa + "hasSimpleResult";
+        this.madeBySensor = sosa + "madeBySensor";
+    }
+
+    public long getRange() {
+        return range;
+    }
+
+    /**
+     * Reads {@code input} through the window shared by all the operators reading it with the
+     * same range, instead of observing it directly.
+     *
+     * @throws IllegalStateException if the operator already has a window
+     */
+    public synchronized void share(RdfStream input) {
+        if (window != null) {
+            throw new IllegalStateException("Operator " + getIRI() + " already reads a window");
+        }
+        window = ObservationWindow.acquire(input, this);
+    }
+
+    /**
+     * Leaves the window, which stops observing its input once no operator reads it. The open
+     * window is not published.
+     */
+    public synchronized void release() {
+        if (window != null) {
+            window.release(this);
+            window = null;
+        }
+    }
+
+    /** Number of operators reading through the window of this one, itself included. */
+    public int getWindowReferences() {
+        return window().getReferences();
+    }
+
+    public void update(Observable upstream, Object data) {
+        if (data instanceof RdfQuadruple) {
+            add((RdfQuadruple) data);
+        }
+    }
+
+    /** Joins one upstream quad into its observation, in the current window. */
+    public void add(RdfQuadruple q) {
+        window().add(q);
+    }
+
+    /** Publishes the result of the open window now, for all the operators sharing it. */
+    public void flush() {
+        window().flush();
+    }
+
+    public long getPeriod() {
+        return Math.max(10L, range / 10);
+    }
+
+    public void tick() {
+        window().tick();
+    }
+
+    private synchronized ObservationWindow window() {
+        if (window == null) {
+            window = new ObservationWindow(null, sosa, range);
+            window.subscribe(this);
+        }
+        return window;
+    }
+
+    /**
+     * Folds what is known of {@code observation} into the open window, called after each of its
+     * triples.
+     *
+     * @return true when the observation is done with and its later triples can be ignored
+     */
+    protected abstract boolean fold(Observation observation);
+
+    /** Publishes the result of the window being closed and resets the window state. */
+    protected abstract void publishWindow();
+
+    /**
+     * Publishes one ComplexEvent: {@code rdf:type event:ComplexEvent}, the sensor, the value
+     * unless null, the {@code details} predicate/object pairs and the time interval.
+     *
+     * @param timestamp timestamp of the quads, that of the earliest upstream quad of the event
+     */
+    protected void publishEvent(long timestamp, String sensor, String value, String minTime, String maxTime, String... details) {
+        String eventIndex = observationIds.next();
+        String event = "_:" + eventIndex;
+        String interval = "_:" + eventIndex + "time";
+
+        String[] triples = new String[(7 + details.length / 2) * 3];
+        int n = 0;
+        n = triple(triples, n, event, RDF_TYPE, EVENT_COMPLEX_EVENT);
+        n = triple(triples, n, event, DUL_IS_OBSERVABLE_AT, interval);
+        n = triple(triples, n, event, isObservedBy, sensor);
+        if (value != null) {
+            n = triple(triples, n, event, hasSimpleResult, value);
+        }
+        for (int i = 0; i + 1 < details.length; i += 2) {
+            n = triple(triples, n, event, details[i], details[i + 1]);
+        }
+        n = triple(triples, n, interval, RDF_TYPE, DUL_TIME_INTERVAL);
+        n = triple(triples, n, interval, TIME_HAS_UPPER_TIMESTAMP, maxTime);
+        n = triple(triples, n, interval, TIME_HAS_LOWER_TIMESTAMP, minTime);
+
+        putObservation(timestamp, n == triples.length ? triples : Arrays.copyOf(triples, n));
+    }
+
+    private static int triple(String[] triples, int n, String subject, String predicate, String object) {
+        triples[n] = subject;
+        triples[n + 1] = predicate;
+        triples[n + 2] = object;
+        return n + 3;
+    }
+
+    /** Triples of one upstream observation received so far; null until received. */
+    protected static final class Observation {
+
+        private static final int DONE = 1 << 31;
+
+        final long timestamp;
+        String node;
+        String interval;
+        String sensor;
+        String value;
+        String type;
+        String location;
+        String upper;
+        String lower;
+        /** number of readings of a debounced observation, 0 until known or if it is not one */
+        int count;
+        /** Free for the operator, e.g. to remember what was already folded. */
+        int folded;
+        /** {@link #folded} of each operator of a shared window, with its DONE bit */
+        private int state;
+        private int[] states;
+
+        Observation(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        boolean isDone(int slot) {
+            return (getState(slot) & DONE) != 0;
+        }
+
+        int getFolded(int slot) {
+            return getState(slot) & ~DONE;
+        }
+
+        void setFolded(int slot, int folded, boolean done) {
+            int value = done ? folded | DONE : folded;
+            if (slot == 0) {
+                state = value;
+                return;
+            }
+            if (states == null || states.length < slot) {
+                states = states == null ? new int[slot] : Arrays.copyOf(states, slot);
+            }
+            states[slot - 1] = value;
+        }
+
+        private int getState(int slot) {
+            if (slot == 0) {
+                return state;
+            }
+            return states != null && states.length >= slot ? states[slot - 1] : 0;
+        }
+
+        /** Number of readings the observation stands for: its count, 1 by default. */
+        int readings() {
+            return count > 0 ? count : 1;
+        }
+
+        /** True once the time interval and both its bounds are known. */
+        boolean hasInterval() {
+            return interval != null && upper != null && lower != null;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package eu.larkc.csparql.eu.tsp.test.operator;
+
+import eu.larkc.csparql.cep.api.RdfQuadruple;
+import eu.larkc.csparql.eu.tsp.test.streamer.ObservationStream;
+import eu.larkc.csparql.runtime.PeriodicProducer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+
+/**
+ * In-Java equivalent of the partitioned query of ECareHome,
+ * <pre>
+ * CONSTRUCT { ?subject ?predicate ?object }
+ * WHERE { ?event rdf:type event:ComplexEvent . ?event (!&lt;&gt;)* ?subject . ?subject ?predicate ?object }
+ * </pre>
+ * with the path bounded to {@code maxDepth} edges: per tumbling window, the triples of every
+ * subject reachable from a ComplexEvent, the event itself included.
+ *
+ * The triples of the window are indexed by subject as they arrive; at the window boundary
+ * each event is expanded breadth-first through the index, each subject once (cycles are
+ * cut), so the work is proportional to the events' own subgraphs instead of a closure over
+ * the whole window. The subgraph of each event is published as one batch, without the
+ * triples already published for a previous event of the window, with the timestamp of the
+ * event's earliest triple.
+ * Windows are tumbling and aligned on multiples of the range, on the arrival time of the
+ * quads, as the engine windows them, and closed by the clock: the timestamp of an upstream
+ * event is that of the observations it was computed from, a window or more earlier, and only
+ * sets the timestamp of the published subgraph.
+ */
+public class ReachableSubgraphOperator extends ObservationStream implements Observer, PeriodicProducer {
+
+    public static final int DEFAULT_MAX_DEPTH = 8;
+
+    private final long range;
+    private final int maxDepth;
+
+    /** predicate, object, predicate, object... of each subject of the window */
+    private final Map<String, List<String>> subjects = new HashMap<String, List<String>>();
+    private final List<String> events = new ArrayList<String>();
+    /** timestamp of the earliest quad of each subject of the window */
+    private final Map<String, Long> origins = new HashMap<String, Long>();
+    private long windowEnd = Long.MIN_VALUE;
+
+    public ReachableSubgraphOperator(String iri, long rangeMillis) {
+        this(iri, rangeMillis, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * @param iri          IRI of the published stream, e.g. {@code http://ecareathome.org/stream#partitioned}
+     * @param rangeMillis  length of the tumbling window
+     * @param maxDepth     longest path followed from an event, in edges
+     */
+    public ReachableSubgraphOperator(String iri, long rangeMillis, int maxDepth) {
+        super(iri);
+        if (rangeMillis <= 0) {
+            throw new IllegalArgumentException("Window range must be positive: " + rangeMillis);
+        }
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("Depth must not be negative: " + maxDepth);
+        }
+        this.range = rangeMillis;
+        this.maxDepth = maxDepth;
+    }
+
+    public long getRange() {
+        return range;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void update(Observable upstream, Object data) {
+        if (data instanceof RdfQuadruple) {
+            add((RdfQuadruple) data);
+        }
+    }
+
+    /** Indexes one upstream quad in the window open at its arrival. */
+    public synchronized void add(RdfQuadruple q) {
+        long now = System.currentTimeMillis();
+        if (now >= windowEnd) {
+            closeWindow();
+            windowEnd = (Math.floorDiv(now, range) + 1) * range;
+        }
+        long timestamp = q.getTimestamp();
+
+        String subject = q.getSubject();
+        List<String> triples = subjects.get(subject);
+        if (triples == null) {
+            triples = new ArrayList<String>(8);
+            subjects.put(subject, triples);
+        }
+        triples.add(q.getPredicate());
+        triples.add(q.getObject());
+        Long origin = origins.get(subject);
+        if (origin == null || timestamp < origin) {
+            origins.put(subject, timestamp);
+        }
+
+        if (ObservationWindowOperator.RDF_TYPE.equals(q.getPredicate())
+                && ObservationWindowOperator.EVENT_COMPLEX_EVENT.equals(q.getObject())) {
+            events.add(subject);
+        }
+    }
+
+    /** Publishes the subgraphs of the open window now. */
+    public synchronized void flush() {
+        closeWindow();
+    }
+
+    public long getPeriod() {
+        return Math.max(10L, range / 10);
+    }
+
+    public synchronized void tick() {
+        long now = System.currentTimeMillis();
+        if (windowEnd != Long.MIN_VALUE && now >= windowEnd) {
+            closeWindow();
+            windowEnd = (Math.floorDiv(now, range) + 1) * range;
+        }
+    }
+
+    private void closeWindow() {
+        if (!events.isEmpty()) {
+            // shallowest depth each subject was expanded at, for the whole window
+            Map<String, Integer> expanded = new HashMap<String, Integer>();
+            ArrayDeque<String> queue = new ArrayDeque<String>();
+            ArrayDeque<Integer> depths = new ArrayDeque<Integer>();
+            List<String> batch = new ArrayList<String>();
+
+            for (String event : events) {
+                long origin = Long.MAX_VALUE;
+                queue.add(event);
+                depths.add(0);
+                while (!queue.isEmpty()) {
+                    String subject = queue.poll();
+                    int depth = depths.poll();
+                    Integer previous = expanded.get(subject);
+                    if (previous != null && previous <= depth) {
+                        continue;
+                    }
+                    expanded.put(subject, depth);
+
+                    List<String> triples = subjects.get(subject);
+                    if (triples == null) {
+                        continue;
+                    }
+                    if (previous == null) {
+                        origin = Math.min(origin, origins.get(subject));
+                    }
+                    for (int i = 0; i < triples.size(); i += 2) {
+                        String object = triples.get(i + 1);
+                        if (previous == null) {
+                            batch.add(subject);
+                            batch.add(triples.get(i));
+                            batch.add(object);
+                        }
+                        if (depth < maxDepth && subjects.containsKey(object)) {
+                            queue.add(object);
+                            depths.add(depth + 1);
+                        }
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    putObservation(origin, batch.toArray(new String[batch.size()]));
+                    batch.clear();
+                }
+            }
+        }
+        subjects.clear();
+        origins.clear();
+        events.clear();
+    }
+}
@@ -0,0 +1,63 @@
+package eu.larkc.csparql.eu.tsp.test.replay;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Zero-copy {@link CharSequence} view over a slice of a {@link ByteBuffer}.
+ * Each byte is read as an ISO-8859-1 char, which is enough for the (ASCII) sensor logs.
+ * Instances are reused from one line to the next: call {@link #toString()} to keep a value.
+ */
+public final class AsciiField implements CharSequence {
+
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    void wrap(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        return (char) (buffer.get(offset + index) & 0xff);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + "), length " + length);
+        }
+        AsciiField sub = new AsciiField();
+        sub.wrap(buffer, offset + start, end - start);
+        return sub;
+    }
+
+    /** Compares the field content with a string without allocating. */
+    public boolean contentEquals(CharSequence s) {
+        if (s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((buffer.get(offset + i) & 0xff) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (buffer.get(offset + i) & 0xff);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,143 @@
+package eu.larkc.csparql.eu.tsp.test.replay;
+
+import eu.larkc.csparql.eu.tsp.test.literal.LiteralEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts the tab separated sensor log into the fixed-width binary log read by
+ * {@link BinaryLogReader}: timestamps are parsed, sensor ids and non-integer values are
+ * dictionary-encoded, once, instead of on every replay.
+ *
+ * Usage: {@code BinaryLogConverter ann.txt [ann.bin]}
+ */
+public class BinaryLogConverter {
+
+    private static Logger logger = LoggerFactory.getLogger(BinaryLogConverter.class);
+
+    private final Map<String, Integer> sensorIndexes = new HashMap<String, Integer>();
+    private final List<String> sensorIds = new ArrayList<String>();
+    private final Map<String, Integer> valueIndexes = new HashMap<String, Integer>();
+    private final List<String> values = new ArrayList<String>();
+
+    private BinaryLogConverter() {
+    }
+
+    /**
+     * Writes the readings of the text log {@code source} to {@code target}.
+     *
+     * @return the number of readings written
+     */
+    public static long convert(Path source, Path target) throws IOException {
+        return new BinaryLogConverter().write(source, target);
+    }
+
+    private long write(Path source, Path target) throws IOException {
+        long count = 0;
+        try (TextLogSource text = TextLogSource.open(source);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BinaryLogFormat.RECORD_SIZE * 4096);
+            out.position(BinaryLogFormat.HEADER_SIZE);
+
+            SensorReading reading = new SensorReading();
+            while (text.next(reading)) {
+                if (!buffer.hasRemaining()) {
+                    flush(buffer, out);
+                }
+                int sensor = index(reading.getSensorId().toString(), sensorIndexes, sensorIds);
+                CharSequence value = reading.getValue();
+                buffer.putLong(reading.getTimestamp());
+                if (LiteralEncoder.isInteger(value)) {
+                    buffer.putInt(sensor);
+                    buffer.putInt(Integer.parseInt(value.toString()));
+                } else {
+                    buffer.putInt(sensor | BinaryLogFormat.STRING_VALUE);
+                    buffer.putInt(index(value.toString(), valueIndexes, values));
+                }
+                count++;
+            }
+            flush(buffer, out);
+
+            long dictionaryOffset = out.position();
+            writeDictionary(sensorIds, buffer, out);
+            writeDictionary(values, buffer, out);
+            flush(buffer, out);
+
+            buffer.putInt(BinaryLogFormat.MAGIC)
+                    .putInt(BinaryLogFormat.VERSION)
+                    .putLong(count)
+                    .putLong(dictionaryOffset)
+                    .putLong(0);
+            buffer.flip();
+            long position = 0;
+            while (buffer.hasRemaining()) {
+                position += out.write(buffer, position);
+            }
+        }
+        return count;
+    }
+
+    private static int index(String key, Map<String, Integer> indexes, List<String> keys) {
+        Integer index = indexes.get(key);
+        if (index == null) {
+            index = keys.size();
+            indexes.put(key, index);
+            keys.add(key);
+        }
+        return index;
+    }
+
+    private static void writeDictionary(List<String> keys, ByteBuffer buffer, FileChannel out) throws IOException {
+        if (buffer.remaining() < 4) {
+            flush(buffer, out);
+        }
+        buffer.putInt(keys.size());
+        for (String key : keys) {
+            byte[] bytes = key.getBytes(BinaryLogFormat.CHARSET);
+            if (bytes.length > Short.MAX_VALUE) {
+                throw new IOException("Dictionary entry longer than " + Short.MAX_VALUE + " bytes: " + key.substring(0, 64) + "...");
+            }
+            if (buffer.remaining() < 2 + bytes.length) {
+                flush(buffer, out);
+            }
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: BinaryLogConverter <sensor log> [<binary log>]");
+            return;
+        }
+        Path source = Paths.get(args[0]);
+        Path target = Paths.get(args.length > 1 ? args[1] : args[0] + ".bin");
+        try {
+            long start = System.currentTimeMillis();
+            long count = convert(source, target);
+            logger.info("{} readings of {} written to {} in {} ms", count, source, target, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            logger.error("Cannot convert " + source, e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package eu.larkc.csparql.eu.tsp.test.replay;
+
+import java.nio.charset.Charset;
+
+/**
+ * Layout of the binary sensor log written by {@link BinaryLogConverter}.
+ *
+ * <pre>
+ * header      magic "ECHB", version, record count, dictionary offset, reserved  (32 bytes)
+ * records     epoch millis (long), sensor (int), value (int)                 (16 bytes each)
+ * dictionary  sensor ids, then string values: count (int), then (length (short), UTF-8 bytes)*
+ * </pre>
+ *
+ * The sensor int is the index of the sensor id in the dictionary; its sign bit is set when
+ * the value is the index of a string value rather than the integer itself.
+ */
+final class BinaryLogFormat {
+
+    static final int MAGIC = 0x45434842;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 16;
+
+    static final int STRING_VALUE = 0x80000000;
+    static final int SENSOR_MASK = 0x7fffffff;
+
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private BinaryLogFormat() {
+    }
+}
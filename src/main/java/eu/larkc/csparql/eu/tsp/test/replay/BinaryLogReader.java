@@ -0,0 +1,159 @@
+package eu.larkc.csparql.eu.tsp.test.replay;
+
+import eu.larkc.csparql.eu.tsp.test.sensor.SensorInfo;
+import eu.larkc.csparql.eu.tsp.test.sensor.SensorRegistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped reader of the binary sensor log written by {@link BinaryLogConverter}.
+ *
+ * The dictionaries are loaded and every sensor resolved once when the file is opened;
+ * replaying is then a sequential scan of 16-byte records, with no parsing and no allocation.
+ * {@link #read(long, SensorReading)} also gives random access to the records.
+ */
+public class BinaryLogReader implements ObservationSource {
+
+    /** Records per mapped segment: 1 GB, so that logs larger than 2 GB are supported. */
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long recordCount;
+    private final String[] sensorIds;
+    private final SensorInfo[] sensors;
+    private final String[] values;
+    private long next;
+
+    private BinaryLogReader(FileChannel channel, SensorRegistry registry) throws IOException {
+        this.channel = channel;
+
+        ByteBuffer header = ByteBuffer.allocate(BinaryLogFormat.HEADER_SIZE);
+        readFully(header, 0);
+        if (header.getInt(0) != BinaryLogFormat.MAGIC) {
+            throw new IOException("Not a binary sensor log");
+        }
+        if (header.getInt(4) != BinaryLogFormat.VERSION) {
+            throw new IOException("Unsupported binary sensor log version " + header.getInt(4));
+        }
+        this.recordCount = header.getLong(8);
+        long dictionaryOffset = header.getLong(16);
+        if (dictionaryOffset != BinaryLogFormat.HEADER_SIZE + recordCount * BinaryLogFormat.RECORD_SIZE) {
+            throw new IOException("Corrupted binary sensor log: " + recordCount + " records, dictionary at " + dictionaryOffset);
+        }
+
+        int segmentCount = (int) ((recordCount + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        this.segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long first = (long) i << SEGMENT_SHIFT;
+            long records = Math.min(1L << SEGMENT_SHIFT, recordCount - first);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    BinaryLogFormat.HEADER_SIZE + first * BinaryLogFormat.RECORD_SIZE, records * BinaryLogFormat.RECORD_SIZE);
+        }
+
+        ByteBuffer dictionary = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset, channel.size() - dictionaryOffset);
+        this.sensorIds = readDictionary(dictionary);
+        this.values = readDictionary(dictionary);
+        this.sensors = new SensorInfo[sensorIds.length];
+        for (int i = 0; i < sensors.length; i++) {
+            sensors[i] = registry.lookup(sensorIds[i]);
+        }
+    }
+
+    public static BinaryLogReader open(Path path) throws IOException {
+        return open(path, SensorRegistry.getDefault());
+    }
+
+    public static BinaryLogReader open(Path path, SensorRegistry registry) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new BinaryLogReader(channel, registry);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** True if {@code path} starts with the header of a binary sensor log. */
+    public static boolean isBinaryLog(Path path) throws IOException {
+        if (!Files.isRegularFile(path) || Files.size(path) < BinaryLogFormat.HEADER_SIZE) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // read the 4 bytes
+            }
+            return magic.getInt(0) == BinaryLogFormat.MAGIC;
+        }
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /** Number of distinct sensors in the log. */
+    public int getSensorCount() {
+        return sensorIds.length;
+    }
+
+    public boolean next(SensorReading target) {
+        if (next >= recordCount) {
+            return false;
+        }
+        read(next++, target);
+        return true;
+    }
+
+    /** Decodes record {@code index} into {@code target}. */
+    public void read(long index, SensorReading target) {
+        if (index < 0 || index >= recordCount) {
+            throw new IndexOutOfBoundsException("record " + index + ", count " + recordCount);
+        }
+        MappedByteBuffer segment = segments[(int) (index >>> SEGMENT_SHIFT)];
+        int offset = (int) (index & SEGMENT_MASK) * BinaryLogFormat.RECORD_SIZE;
+        long timestamp = segment.getLong(offset);
+        int sensor = segment.getInt(offset + 8);
+        int value = segment.getInt(offset + 12);
+
+        int sensorIndex = sensor & BinaryLogFormat.SENSOR_MASK;
+        if ((sensor & BinaryLogFormat.STRING_VALUE) != 0) {
+            target.set(timestamp, sensorIds[sensorIndex], sensors[sensorIndex], values[value]);
+        } else {
+            target.set(timestamp, sensorIds[sensorIndex], sensors[sensorIndex], value);
+        }
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated binary sensor log");
+            }
+        }
+    }
+
+    private static String[] readDictionary(ByteBuffer dictionary) {
+        String[] keys = new String[dictionary.getInt()];
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < keys.length; i++) {
+            int length = dictionary.getShort();
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+            dictionary.get(bytes, 0, length);
+            keys[i] = new String(bytes, 0, length, BinaryLogFormat.CHARSET);
+        }
+        return keys;
+    }
+}
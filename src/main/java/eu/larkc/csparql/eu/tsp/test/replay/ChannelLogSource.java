@@ -0,0 +1,121 @@
+package eu.larkc.csparql.eu.tsp.test.replay;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the tab separated sensor log from any blocking {@link ReadableByteChannel}: a gzip
+ * file, stdin, a TCP connection...
+ *
+ * Bytes are read into one reusable buffer (grown only for a line longer than it) and the
+ * lines are tokenized in place, as with the mapped file: a reading is a view over the buffer
+ * and is only valid until the next one is read.
+ */
+public class ChannelLogSource implements ObservationSource {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final LogLine line = new LogLine();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private int lineStart;
+    private boolean endOfInput;
+
+    public ChannelLogSource(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.limit(0);
+    }
+
+    public static ChannelLogSource gzip(Path path) throws IOException {
+        return new ChannelLogSource(Channels.newChannel(new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE)));
+    }
+
+    /** The log written on the standard input of the process. */
+    public static ChannelLogSource stdin() {
+        return new ChannelLogSource(new FileInputStream(FileDescriptor.in).getChannel());
+    }
+
+    /** The log sent by the server listening on {@code address}. */
+    public static ChannelLogSource connect(InetSocketAddress address) throws IOException {
+        return new ChannelLogSource(SocketChannel.open(address));
+    }
+
+    /** Waits for one client on {@code port} and reads the log it sends. */
+    public static ChannelLogSource accept(int port) throws IOException {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.socket().bind(new InetSocketAddress(port));
+            return new ChannelLogSource(server.accept());
+        }
+    }
+
+    public boolean next(SensorReading target) throws IOException {
+        while (true) {
+            int limit = buffer.limit();
+            int end = lineFeed(lineStart, limit);
+            if (end < 0) {
+                if (!endOfInput) {
+                    fill();
+                    continue;
+                }
+                if (lineStart >= limit) {
+                    return false;
+                }
+                // last line, without line feed
+                end = limit;
+            }
+            int start = lineStart;
+            lineStart = Math.min(end + 1, limit);
+            if (end > start && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            line.tokenize(buffer, start, end);
+            if (target.read(line)) {
+                return true;
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int lineFeed(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Moves the pending partial line to the start of the buffer and reads after it. */
+    private void fill() throws IOException {
+        int pending = buffer.limit() - lineStart;
+        if (lineStart == 0 && pending == buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+            buffer.position(0);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.position(lineStart);
+            buffer.compact();
+        }
+        lineStart = 0;
+
+        int read = channel.read(buffer);
+        if (read < 0) {
+            endOfInput = true;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,52 @@
+package eu.larkc.csparql.eu.tsp.test.replay;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable cursor over one line of the sensor log: the tab separated fields are exposed
+ * as {@link AsciiField}s pointing straight into the memory-mapped file.
+ */
+public final class LogLine {
+
+    private static final int MAX_FIELDS = 8;
+
+    private final AsciiField[] fields = new AsciiField[MAX_FIELDS];
+    private final AsciiField whole = new AsciiField();
+    private int fieldCount;
+
+    public LogLine() {
+        for (int i = 0; i < MAX_FIELDS; i++) {
+            fields[i] = new AsciiField();
+        }
+    }
+
+    /** Splits [start, end) of {@code buffer} on tabs. */
+    void tokenize(ByteBuffer buffer, int start, int end) {
+        whole.wrap(buffer, start, end - start);
+        fieldCount = 0;
+        int fieldStart = start;
+        for (int i = start; i < end && fieldCount < MAX_FIELDS - 1; i++) {
+            if (buffer.get(i) == '\t') {
+                fields[fieldCount++].wrap(buffer, fieldStart, i - fieldStart);
+                fieldStart = i + 1;
+            }
+        }
+        fields[fieldCount++].wrap(buffer, fieldStart, end - fieldStart);
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    public AsciiField field(int index) {
+        if (index >= fieldCount) {
+            throw new IndexOutOfBoundsException("field " + index + ", count " + fieldCount);
+        }
+        return fields[index];
+    }
+
+    @Override
+    public String toString() {
+        return whole.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package eu.larkc.csparql.eu.tsp.test.replay;
+
+/**
+ * Allocation-free parsing of the recorded timestamps of the sensor log
+ * ("yyyy-MM-dd HH:mm:ss[.ffffff]", a 'T' separator is also accepted).
+ * The local time is read as if it were UTC: only the differences between readings matter
+ * for pacing a replay.
+ */
+public final class LogTimestamps {
+
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private LogTimestamps() {
+    }
+
+    /**
+     * @return the epoch millis of {@code s}, or {@link #INVALID} if it is not a timestamp
+     */
+    public static long parseMillis(CharSequence s) {
+        if (s.length() < 19
+                || s.charAt(4) != '-' || s.charAt(7) != '-'
+                || (s.charAt(10) != ' ' && s.charAt(10) != 'T')
+                || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return INVALID;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = digits(s, 17, 2);
+        if ((year | month | day | hour | minute | second) < 0 || month < 1 || month > 12 || day < 1) {
+            return INVALID;
+        }
+
+        int millis = 0;
+        if (s.length() > 20 && s.charAt(19) == '.') {
+            // keep the first three digits of the fraction, whatever its precision
+            int scale = 100;
+            for (int i = 20; i < s.length() && i < 23; i++) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') {
+                    return INVALID;
+                }
+                millis += (c - '0') * scale;
+                scale /= 10;
+            }
+        }
+
+        long seconds = daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+        return seconds * 1000L + millis;
+    }
+
+    private static int digits(CharSequence s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /** Days since 1970-01-01 of a proleptic Gregorian date (H. Hinnant's algorithm). */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097L + doe - 719468L;
+    }
+}
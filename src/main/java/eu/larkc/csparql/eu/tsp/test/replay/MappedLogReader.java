@@ -0,0 +1,151 @@
+package eu.larkc.csparql.eu.tsp.test.replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Memory-mapped reader for the tab separated sensor log (ann.txt).
+ *
+ * The file is mapped once, in segments cut on line boundaries so that logs larger than 2 GB
+ * are supported, and a line-offset index is built while mapping. Lines are then tokenized
+ * in place into a reusable {@link LogLine}: no String is created unless the caller asks for one.
+ */
+public class MappedLogReader implements Closeable {
+
+    private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+    /** Index of the first line of each segment. */
+    private int[] segmentFirstLines = new int[4];
+    /** Offset of each line start, relative to its segment. */
+    private int[] lineStarts = new int[1 << 16];
+    private int lineCount;
+
+    private MappedLogReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        index();
+    }
+
+    public static MappedLogReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedLogReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void index() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            long window = Math.min(MAX_SEGMENT_SIZE, size - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+            int segmentEnd = (int) window;
+            if (position + window < size) {
+                // cut the segment after its last complete line
+                segmentEnd = lastLineEnd(buffer, (int) window);
+                if (segmentEnd == 0) {
+                    throw new IOException("Line longer than " + MAX_SEGMENT_SIZE + " bytes at offset " + position);
+                }
+            }
+            buffer.limit(segmentEnd);
+            addSegment(buffer);
+            position += segmentEnd;
+        }
+    }
+
+    private static int lastLineEnd(MappedByteBuffer buffer, int window) {
+        for (int i = window - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private void addSegment(MappedByteBuffer buffer) {
+        int segment = segments.size();
+        if (segment == segmentFirstLines.length) {
+            segmentFirstLines = Arrays.copyOf(segmentFirstLines, segment * 2);
+        }
+        segments.add(buffer);
+        segmentFirstLines[segment] = lineCount;
+
+        int limit = buffer.limit();
+        int start = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                addLine(start);
+                start = i + 1;
+            }
+        }
+        if (start < limit) {
+            addLine(start);
+        }
+    }
+
+    private void addLine(int start) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount++] = start;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Tokenizes line {@code index} into {@code target}. Trailing '\r' is dropped.
+     */
+    public void read(int index, LogLine target) {
+        if (index < 0 || index >= lineCount) {
+            throw new IndexOutOfBoundsException("line " + index + ", count " + lineCount);
+        }
+        int segment = segmentOf(index);
+        MappedByteBuffer buffer = segments.get(segment);
+        int start = lineStarts[index];
+        int end;
+        if (index + 1 < lineCount && segmentOf(index + 1) == segment) {
+            end = lineStarts[index + 1] - 1;
+        } else {
+            end = buffer.limit();
+            if (end > start && buffer.get(end - 1) == '\n') {
+                end--;
+            }
+        }
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        target.tokenize(buffer, start, end);
+    }
+
+    private int segmentOf(int line) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (segmentFirstLines[mid] <= line) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public void close() throws IOException {
+        segments.clear();
+        channel.close();
+    }
+}
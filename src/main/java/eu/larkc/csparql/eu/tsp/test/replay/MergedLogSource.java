@@ -0,0 +1,247 @@
+package eu.larkc.csparql.eu.tsp.test.replay;
+
+import eu.larkc.csparql.eu.tsp.test.sensor.SensorInfo;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays a directory of sensor logs (one per home and day, text or binary) as a single
+ * source, in global timestamp order.
+ *
+ * Each file is parsed by worker threads, a chunk of readings at a time and a few chunks ahead
+ * of the replay; the replaying thread only merges the chunks with a k-way heap merge on the
+ * recorded timestamps. Every log must be in timestamp order itself. Readings carry the name
+ * of their file, without extension, as {@link SensorReading#getHome() home}.
+ */
+public class MergedLogSource implements ObservationSource {
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final int PREFETCH = 4;
+
+    private final ExecutorService workers;
+    private final List<Lane> lanes = new ArrayList<Lane>();
+    private final PriorityQueue<Lane> heap;
+    private boolean started;
+
+    public MergedLogSource(List<Path> files, int workerThreads) {
+        this.workers = Executors.newFixedThreadPool(Math.max(1, Math.min(workerThreads, files.size())), new WorkerThreadFactory());
+        this.heap = new PriorityQueue<Lane>(Math.max(1, files.size()), new Comparator<Lane>() {
+            public int compare(Lane a, Lane b) {
+                int byTime = Long.compare(a.timestamp(), b.timestamp());
+                return byTime != 0 ? byTime : Integer.compare(a.order, b.order);
+            }
+        });
+        for (Path file : files) {
+            lanes.add(new Lane(file, lanes.size()));
+        }
+        for (Lane lane : lanes) {
+            lane.schedule();
+        }
+    }
+
+    /** Merges the regular files of {@code directory}, parsed on one worker per core. */
+    public static MergedLogSource open(Path directory) throws IOException {
+        return open(directory, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static MergedLogSource open(Path directory, int workerThreads) throws IOException {
+        List<Path> files = new ArrayList<Path>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (Files.isRegularFile(entry) && !entry.getFileName().toString().startsWith(".")) {
+                    files.add(entry);
+                }
+            }
+        }
+        Collections.sort(files);
+        return new MergedLogSource(files, workerThreads);
+    }
+
+    public int getFileCount() {
+        return lanes.size();
+    }
+
+    public boolean next(SensorReading target) throws IOException {
+        if (!started) {
+            started = true;
+            for (Lane lane : lanes) {
+                if (lane.advance()) {
+                    heap.add(lane);
+                }
+            }
+        }
+        Lane lane = heap.poll();
+        if (lane == null) {
+            return false;
+        }
+        lane.copyTo(target);
+        if (lane.advance()) {
+            heap.add(lane);
+        }
+        return true;
+    }
+
+    public void close() throws IOException {
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IOException failure = null;
+        for (Lane lane : lanes) {
+            try {
+                lane.closeSource();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /** Readings parsed ahead by a worker. */
+    private static final class Chunk {
+
+        final long[] timestamps = new long[CHUNK_SIZE];
+        final SensorInfo[] sensors = new SensorInfo[CHUNK_SIZE];
+        final String[] sensorIds = new String[CHUNK_SIZE];
+        final String[] values = new String[CHUNK_SIZE];
+        int size;
+        boolean last;
+        IOException failure;
+    }
+
+    /** One log: parsed by the workers, consumed by the merge. */
+    private final class Lane implements Runnable {
+
+        final Path file;
+        final int order;
+        final String home;
+        final LinkedBlockingQueue<Chunk> ready = new LinkedBlockingQueue<Chunk>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile boolean parsed;
+
+        // worker side, one task at a time
+        private ObservationSource source;
+        private final SensorReading parsing = new SensorReading();
+
+        // merge side
+        private Chunk current;
+        private int position = -1;
+
+        Lane(Path file, int order) {
+            this.file = file;
+            this.order = order;
+            String name = file.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            this.home = dot > 0 ? name.substring(0, dot) : name;
+        }
+
+        void schedule() {
+            if (!parsed && ready.size() < PREFETCH && scheduled.compareAndSet(false, true)) {
+                workers.execute(this);
+            }
+        }
+
+        public void run() {
+            Chunk chunk = new Chunk();
+            try {
+                if (source == null) {
+                    source = ObservationSource.open(file);
+                }
+                while (chunk.size < CHUNK_SIZE && source.next(parsing)) {
+                    int i = chunk.size++;
+                    chunk.timestamps[i] = parsing.getTimestamp();
+                    chunk.sensors[i] = parsing.getSensor();
+                    chunk.sensorIds[i] = chunk.sensors[i].getId();
+                    chunk.values[i] = parsing.getValue().toString();
+                }
+                chunk.last = chunk.size < CHUNK_SIZE;
+            } catch (IOException e) {
+                chunk.failure = e;
+                chunk.last = true;
+            } catch (RuntimeException e) {
+                chunk.failure = new IOException("Cannot parse " + file, e);
+                chunk.last = true;
+            }
+            if (chunk.last) {
+                parsed = true;
+                try {
+                    closeSource();
+                } catch (IOException e) {
+                    // everything was read
+                }
+            }
+            ready.add(chunk);
+            scheduled.set(false);
+            schedule();
+        }
+
+        /** Moves to the next reading of this log; false when there is none. */
+        boolean advance() throws IOException {
+            position++;
+            while (current == null || position >= current.size) {
+                if (current != null && current.last) {
+                    return false;
+                }
+                try {
+                    current = ready.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for " + file);
+                }
+                schedule();
+                if (current.failure != null) {
+                    throw current.failure;
+                }
+                position = 0;
+            }
+            return true;
+        }
+
+        long timestamp() {
+            return current.timestamps[position];
+        }
+
+        void copyTo(SensorReading target) {
+            target.set(current.timestamps[position], current.sensorIds[position], current.sensors[position], current.values[position]);
+            target.setHome(home);
+        }
+
+        synchronized void closeSource() throws IOException {
+            if (source != null) {
+                source.close();
+                source = null;
+            }
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "log-merge-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
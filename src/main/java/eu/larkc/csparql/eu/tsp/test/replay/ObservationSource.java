@@ -0,0 +1,67 @@
+package eu.larkc.csparql.eu.tsp.test.replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Sequence of recorded sensor readings replayed by the streamers.
+ *
+ * The streamers only see this interface: a new kind of source (file format, transport) is
+ * added by implementing it, without touching the code that builds the observations.
+ */
+public interface ObservationSource extends Closeable {
+
+    /**
+     * Reads the next reading into {@code target}.
+     *
+     * @return false at the end of the source
+     */
+    boolean next(SensorReading target) throws IOException;
+
+    /**
+     * Opens a sensor log: the binary conversion of {@link BinaryLogConverter} if the file
+     * has its header, a gzip compressed text log if its name ends with ".gz", the tab
+     * separated text log otherwise. A directory is replayed as the
+     * {@link MergedLogSource merge} of its logs.
+     */
+    static ObservationSource open(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            return MergedLogSource.open(path);
+        }
+        if (path.getFileName().toString().endsWith(".gz")) {
+            return ChannelLogSource.gzip(path);
+        }
+        if (BinaryLogReader.isBinaryLog(path)) {
+            return BinaryLogReader.open(path);
+        }
+        return TextLogSource.open(path);
+    }
+
+    /**
+     * Opens the source described by {@code location}: "-" for the standard input,
+     * "tcp://host:port" to read from a server, "tcp://:port" to wait for a client on a local
+     * port, and otherwise a path, see {@link #open(Path)}.
+     */
+    static ObservationSource open(String location) throws IOException {
+        if (location.equals("-")) {
+            return ChannelLogSource.stdin();
+        }
+        if (location.startsWith("tcp://")) {
+            String address = location.substring("tcp://".length());
+            int colon = address.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IOException("Missing port in " + location);
+            }
+            int port = Integer.parseInt(address.substring(colon + 1));
+            if (colon == 0) {
+                return ChannelLogSource.accept(port);
+            }
+            return ChannelLogSource.connect(new InetSocketAddress(address.substring(0, colon), port));
+        }
+        return open(Paths.get(location));
+    }
+}
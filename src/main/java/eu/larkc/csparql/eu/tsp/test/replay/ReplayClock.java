@@ -0,0 +1,96 @@
+package eu.larkc.csparql.eu.tsp.test.replay;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces the emission of replayed readings.
+ *
+ * Either a fixed delay between two emitted readings (the historical behaviour of the
+ * streamers), or the recorded inter-arrival times divided by a speed-up factor: 1 replays
+ * in real time, 60 replays one hour per minute, {@link #AS_FAST_AS_POSSIBLE} never waits.
+ * A clock is stateful and paces a single replay.
+ */
+public final class ReplayClock {
+
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    private final long fixedDelay;
+    private final double speedup;
+
+    private long firstEventTime = LogTimestamps.INVALID;
+    private long firstNanoTime;
+    private boolean started;
+
+    private ReplayClock(long fixedDelay, double speedup) {
+        this.fixedDelay = fixedDelay;
+        this.speedup = speedup;
+    }
+
+    /** Sleeps {@code sleepTime} ms between two readings, whatever their recorded time. */
+    public static ReplayClock fixedDelay(long sleepTime) {
+        return new ReplayClock(sleepTime, 0);
+    }
+
+    /** Follows the recorded timestamps, {@code speedup} times faster than real time. */
+    public static ReplayClock eventTime(double speedup) {
+        if (!(speedup > 0)) {
+            throw new IllegalArgumentException("speed-up factor must be positive: " + speedup);
+        }
+        return new ReplayClock(-1, speedup);
+    }
+
+    public static ReplayClock asFastAsPossible() {
+        return eventTime(AS_FAST_AS_POSSIBLE);
+    }
+
+    /**
+     * Parses a speed-up factor given on the command line: a number, or "max".
+     */
+    public static ReplayClock parse(String speedup) {
+        if (speedup.equalsIgnoreCase("max")) {
+            return asFastAsPossible();
+        }
+        return eventTime(Double.parseDouble(speedup.endsWith("x") ? speedup.substring(0, speedup.length() - 1) : speedup));
+    }
+
+    public boolean isEventTime() {
+        return fixedDelay < 0;
+    }
+
+    /**
+     * Blocks until the reading recorded at {@code eventTime} (epoch millis, or
+     * {@link LogTimestamps#INVALID} when unknown) is due. Readings without a usable timestamp,
+     * or recorded before the first one, are emitted right away.
+     *
+     * @return how late the reading is on its due time, in ms (always 0 with a fixed delay)
+     */
+    public long awaitEmission(long eventTime) throws InterruptedException {
+        if (!isEventTime()) {
+            if (started) {
+                Thread.sleep(fixedDelay);
+            }
+            started = true;
+            return 0;
+        }
+        if (speedup == AS_FAST_AS_POSSIBLE || eventTime == LogTimestamps.INVALID) {
+            return 0;
+        }
+        if (!started) {
+            started = true;
+            firstEventTime = eventTime;
+            firstNanoTime = System.nanoTime();
+            return 0;
+        }
+        long offset = eventTime - firstEventTime;
+        if (offset <= 0) {
+            return 0;
+        }
+        long due = firstNanoTime + (long) (TimeUnit.MILLISECONDS.toNanos(offset) / speedup);
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(-wait);
+    }
+}
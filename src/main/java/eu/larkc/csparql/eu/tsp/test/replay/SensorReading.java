@@ -0,0 +1,97 @@
+package eu.larkc.csparql.eu.tsp.test.replay;
+
+import eu.larkc.csparql.eu.tsp.test.sensor.SensorInfo;
+import eu.larkc.csparql.eu.tsp.test.sensor.SensorRegistry;
+
+/**
+ * One parsed line of the sensor log: recorded time, sensor, raw value.
+ * Instances are reusable and their fields may be views over the mapped log, so a reading
+ * is only valid until the next one is read.
+ */
+public final class SensorReading {
+
+    private long timestamp = LogTimestamps.INVALID;
+    private CharSequence sensorId;
+    private CharSequence value;
+    private SensorInfo sensor;
+    private Object line;
+    private String home;
+    private final StringBuilder digits = new StringBuilder(11);
+
+    /**
+     * Parses {@code line} into this reading.
+     *
+     * @return false if the line does not hold a reading
+     */
+    public boolean read(LogLine line) {
+        return read(line, SensorRegistry.getDefault());
+    }
+
+    public boolean read(LogLine line, SensorRegistry registry) {
+        if (line.getFieldCount() < 3 || line.field(1).length() == 0) {
+            return false;
+        }
+        this.timestamp = LogTimestamps.parseMillis(line.field(0));
+        this.sensorId = line.field(1);
+        this.value = line.field(2);
+        this.sensor = registry.lookup(sensorId);
+        this.line = line;
+        this.home = null;
+        return true;
+    }
+
+    /** Fills this reading from a decoded binary record with a string value. */
+    void set(long timestamp, CharSequence sensorId, SensorInfo sensor, CharSequence value) {
+        this.timestamp = timestamp;
+        this.sensorId = sensorId;
+        this.value = value;
+        this.sensor = sensor;
+        this.line = null;
+        this.home = null;
+    }
+
+    /** Fills this reading from a decoded binary record with an integer value. */
+    void set(long timestamp, CharSequence sensorId, SensorInfo sensor, int value) {
+        digits.setLength(0);
+        digits.append(value);
+        set(timestamp, sensorId, sensor, digits);
+    }
+
+    void setHome(String home) {
+        this.home = home;
+    }
+
+    /** Recorded time in epoch millis, or {@link LogTimestamps#INVALID}. */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public CharSequence getSensorId() {
+        return sensorId;
+    }
+
+    public CharSequence getValue() {
+        return value;
+    }
+
+    public SensorInfo getSensor() {
+        return sensor;
+    }
+
+    public String getSensorType() {
+        return sensor.getType();
+    }
+
+    /** Home the reading was recorded in, or null when the log is not from a set of homes. */
+    public String getHome() {
+        return home;
+    }
+
+    @Override
+    public String toString() {
+        if (line == null) {
+            return timestamp + "\t" + sensorId + "\t" + value;
+        }
+        return String.valueOf(line);
+    }
+}
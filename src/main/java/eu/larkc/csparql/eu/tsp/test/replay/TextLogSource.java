@@ -0,0 +1,38 @@
+package eu.larkc.csparql.eu.tsp.test.replay;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Replays the tab separated sensor log through a {@link MappedLogReader}, skipping the lines
+ * that do not hold a reading.
+ */
+public class TextLogSource implements ObservationSource {
+
+    private final MappedLogReader reader;
+    private final LogLine line = new LogLine();
+    private int next;
+
+    public TextLogSource(MappedLogReader reader) {
+        this.reader = reader;
+    }
+
+    public static TextLogSource open(Path path) throws IOException {
+        return new TextLogSource(MappedLogReader.open(path));
+    }
+
+    public boolean next(SensorReading target) {
+        int lineCount = reader.getLineCount();
+        while (next < lineCount) {
+            reader.read(next++, line);
+            if (target.read(line)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,91 @@
+package eu.larkc.csparql.eu.tsp.test.sensor;
+
+/**
+ * Immutable description of one sensor of the home, computed once per sensor id by the
+ * {@link SensorRegistry}: type, type acronym, family, room and the IRIs used in the
+ * observations.
+ */
+public final class SensorInfo {
+
+    public static final String UNKNOWN_TYPE = "unknown_sensors";
+
+    /** Sensor families, each published on its own stream (see SensorFamilyStreamer). */
+    public static final String FAMILY_DOOR = "door";
+    public static final String FAMILY_MOTION = "motion";
+    public static final String FAMILY_LIGHT = "light";
+    public static final String FAMILY_TEMPERATURE = "temperature";
+    public static final String FAMILY_BATTERY = "battery";
+    public static final String FAMILY_UNKNOWN = "unknown";
+
+    /** All the known families. */
+    public static final String[] FAMILIES = {FAMILY_DOOR, FAMILY_MOTION, FAMILY_LIGHT, FAMILY_TEMPERATURE, FAMILY_BATTERY};
+
+    private final String id;
+    private final String type;
+    private final String acronym;
+    private final String family;
+    private final String room;
+    private final String sensorIri;
+    private final String typeIri;
+    private final String roomIri;
+
+    SensorInfo(String id, String type, String acronym, String family, String room, String baseUri) {
+        this.id = id;
+        this.type = type;
+        this.acronym = acronym;
+        this.family = family;
+        this.room = room;
+        this.sensorIri = baseUri + id;
+        this.typeIri = baseUri + type;
+        this.roomIri = baseUri + room;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /** e.g. "infrared_motion_sensors", or {@link #UNKNOWN_TYPE}. */
+    public String getType() {
+        return type;
+    }
+
+    /** Type prefix of the id, e.g. "M", "MA", "LS". */
+    public String getAcronym() {
+        return acronym;
+    }
+
+    /**
+     * Coarse kind of the sensor, shared by several types: {@link #FAMILY_MOTION} for both
+     * motion sensor types, {@link #FAMILY_LIGHT} for light sensors and switches...
+     * {@link #FAMILY_UNKNOWN} when the type is unknown.
+     */
+    public String getFamily() {
+        return family;
+    }
+
+    /** Last three characters of the id. */
+    public String getRoom() {
+        return room;
+    }
+
+    public boolean isKnown() {
+        return !UNKNOWN_TYPE.equals(type);
+    }
+
+    public String getSensorIri() {
+        return sensorIri;
+    }
+
+    public String getTypeIri() {
+        return typeIri;
+    }
+
+    public String getRoomIri() {
+        return roomIri;
+    }
+
+    @Override
+    public String toString() {
+        return id + " (" + type + ", room " + room + ")";
+    }
+}
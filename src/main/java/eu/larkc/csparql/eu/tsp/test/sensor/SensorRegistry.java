@@ -0,0 +1,188 @@
+package eu.larkc.csparql.eu.tsp.test.sensor;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Classifies each distinct sensor id once and serves the resulting {@link SensorInfo}
+ * from then on.
+ *
+ * Ids of at most 8 ASCII characters (all those of the CASAS logs: M001, LS012, BATV012...)
+ * are packed into a long and looked up in an open-addressing table, straight from the
+ * {@link CharSequence} of the log: a lookup allocates nothing once the sensor is known.
+ * The table is copied on insert, which only happens once per sensor, so lookups need no lock.
+ * Longer ids fall back to a hash map keyed by String.
+ */
+public class SensorRegistry {
+
+    private static final SensorRegistry DEFAULT = new SensorRegistry("");
+
+    private static final long NO_KEY = 0L;
+
+    private final String baseUri;
+
+    private volatile Table table = new Table(64);
+    private final ConcurrentHashMap<String, SensorInfo> longIds = new ConcurrentHashMap<String, SensorInfo>();
+
+    public SensorRegistry(String baseUri) {
+        this.baseUri = baseUri;
+    }
+
+    /** Registry of the streamers, the sensor IRIs being the bare sensor ids. */
+    public static SensorRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public SensorInfo lookup(CharSequence sensorId) {
+        long key = pack(sensorId);
+        if (key == NO_KEY) {
+            String id = sensorId.toString();
+            SensorInfo info = longIds.get(id);
+            if (info == null) {
+                info = classify(id);
+                SensorInfo previous = longIds.putIfAbsent(id, info);
+                if (previous != null) {
+                    info = previous;
+                }
+            }
+            return info;
+        }
+
+        SensorInfo info = table.get(key);
+        return info != null ? info : insert(key, sensorId);
+    }
+
+    private synchronized SensorInfo insert(long key, CharSequence sensorId) {
+        Table current = table;
+        SensorInfo info = current.get(key);
+        if (info == null) {
+            info = classify(sensorId.toString());
+            table = current.with(key, info);
+        }
+        return info;
+    }
+
+    /** Packs up to 8 non-NUL ASCII chars into a long, or returns {@link #NO_KEY}. */
+    private static long pack(CharSequence s) {
+        int length = s.length();
+        if (length == 0 || length > 8) {
+            return NO_KEY;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c == 0 || c > 0x7f) {
+                return NO_KEY;
+            }
+            key = (key << 8) | c;
+        }
+        return key;
+    }
+
+    private SensorInfo classify(String id) {
+        char first = id.isEmpty() ? 0 : id.charAt(0);
+        char second = id.length() > 1 ? id.charAt(1) : 0;
+        String type;
+        String family;
+        int acronymLength = 1;
+        switch (first) {
+            case 'D':
+                type = "magnetic_door_sensors";
+                family = SensorInfo.FAMILY_DOOR;
+                break;
+            case 'L':
+                type = second == 'A' ? "light_switches" : "light_sensors";
+                family = SensorInfo.FAMILY_LIGHT;
+                if (second == 'S' || second == 'A') {
+                    acronymLength = 2;
+                }
+                break;
+            case 'M':
+                type = second == 'A' ? "wide_area_infrared_motion_sensors" : "infrared_motion_sensors";
+                family = SensorInfo.FAMILY_MOTION;
+                if (second == 'A') {
+                    acronymLength = 2;
+                }
+                break;
+            case 'T':
+                type = "temperature_sensors";
+                family = SensorInfo.FAMILY_TEMPERATURE;
+                break;
+            default:
+                if (first == 'B' && second == 'A') {
+                    type = "sensor_battery_levels";
+                    family = SensorInfo.FAMILY_BATTERY;
+                    acronymLength = 2;
+                } else {
+                    type = SensorInfo.UNKNOWN_TYPE;
+                    family = SensorInfo.FAMILY_UNKNOWN;
+                }
+                break;
+        }
+        String acronym = id.substring(0, Math.min(acronymLength, id.length()));
+        String room = id.length() > 3 ? id.substring(id.length() - 3) : id;
+        return new SensorInfo(id, type, acronym, family, room, baseUri);
+    }
+
+    /** Immutable open-addressing table, linear probing. */
+    private static final class Table {
+
+        private final long[] keys;
+        private final SensorInfo[] values;
+        private final int mask;
+        private final int size;
+
+        Table(int capacity) {
+            this(new long[capacity], new SensorInfo[capacity], 0);
+        }
+
+        private Table(long[] keys, SensorInfo[] values, int size) {
+            this.keys = keys;
+            this.values = values;
+            this.mask = keys.length - 1;
+            this.size = size;
+        }
+
+        SensorInfo get(long key) {
+            for (int i = slot(key); ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) {
+                    return values[i];
+                }
+                if (k == NO_KEY) {
+                    return null;
+                }
+            }
+        }
+
+        Table with(long key, SensorInfo info) {
+            Table copy;
+            if ((size + 1) * 2 > keys.length) {
+                copy = new Table(keys.length * 2);
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] != NO_KEY) {
+                        copy.store(keys[i], values[i]);
+                    }
+                }
+            } else {
+                copy = new Table(Arrays.copyOf(keys, keys.length), Arrays.copyOf(values, values.length), size);
+            }
+            copy.store(key, info);
+            return new Table(copy.keys, copy.values, size + 1);
+        }
+
+        private void store(long key, SensorInfo info) {
+            int i = slot(key);
+            while (keys[i] != NO_KEY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = info;
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & mask;
+        }
+    }
+}
@@ -20,14 +20,10 @@
  ******************************************************************************/
 package eu.larkc.csparql.eu.tsp.test.streamer;
 
-import eu.larkc.csparql.cep.api.RdfQuadruple;
-import eu.larkc.csparql.cep.api.RdfStream;
+import eu.larkc.csparql.runtime.BufferedRdfStream;
+import eu.larkc.csparql.runtime.PeriodicProducer;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Random;
-
-public class AdditionStreamer extends RdfStream implements Runnable  {
+public class AdditionStreamer extends BufferedRdfStream implements PeriodicProducer  {
 
 	private long sleepTime;
 	private String baseUri;
@@ -38,19 +34,12 @@ public class AdditionStreamer extends RdfStream implements Runnable  {
 		this.baseUri = baseUri;
 	}
 
-	public void run() {
-
-
-		while(true){
-			try{
-
-				Thread.sleep(sleepTime);
-				
-			} catch(Exception e){
-				e.printStackTrace();
-			}
-		}
+	public long getPeriod() {
+		return sleepTime;
+	}
 
+	public void tick() {
+		// placeholder stream: nothing to produce yet
 	}
 
 }
@@ -20,27 +20,19 @@
  ******************************************************************************/
 package eu.larkc.csparql.eu.tsp.test.streamer;
 
-import eu.larkc.csparql.cep.api.RdfQuadruple;
-import eu.larkc.csparql.cep.api.RdfStream;
-import eu.larkc.csparql.eu.tsp.test.Utils;
+import eu.larkc.csparql.eu.tsp.test.literal.LiteralEncoder;
+import eu.larkc.csparql.eu.tsp.test.literal.TimestampLiterals;
+import eu.larkc.csparql.runtime.PeriodicProducer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
-import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Stream;
+import java.util.Random;
 
-import static eu.larkc.csparql.eu.tsp.test.Utils.*;
-
-public class CouchStreamer extends RdfStream implements Runnable  {
+public class CouchStreamer extends ObservationStream implements PeriodicProducer  {
 
 	private long sleepTime;
 	private String baseUri;
+	private final Random random = new Random();
 
 	private static Logger logger = LoggerFactory.getLogger(CouchStreamer.class);
 
@@ -50,45 +42,31 @@ public class CouchStreamer extends RdfStream implements Runnable  {
 		this.baseUri = baseUri;
 	}
 
-	public void run() {
-
-		Random random = new Random();
-		int sensorIndex;
-		//int subjectIndex;
-		int roomIndex;
-		int observationIndex;
-		boolean isCouch;
-
-		while(true){
-			try{
-
-				isCouch = random.nextBoolean();
-				observationIndex = random.nextInt(Integer.MAX_VALUE);
-				String observationTime = observationIndex + "time";
-
-				RdfQuadruple q = new RdfQuadruple("_:" + observationIndex, "http://www.ontologydesignpatterns.org/ont/dul/DUL.owl#isObservableAt" , observationTime, System.currentTimeMillis());
-				this.put(q);
-				q = new RdfQuadruple("_:" + observationIndex, "http://www.w3.org/ns/sosa#isObservedBy" , "couch_sensor", System.currentTimeMillis());
-				this.put(q);
-				q = new RdfQuadruple("_:" + observationIndex, "http://www.w3.org/ns/sosa#hasSimpleResult" , "\""+isCouch+"\"^^http://www.w3.org/2001/XMLSchema#boolean", System.currentTimeMillis());
-				this.put(q);
-
-				SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss+SSS");
-
-				q = new RdfQuadruple( observationTime, "http://w3id.org/ecareathome/patterns/timeinterval.owl#hasUpperTimeStampValue" , sdf.format(new Date()) + "^^http://www.w3.org/2001/XMLSchema#dateTime", System.currentTimeMillis());
-				this.put(q);
-				q = new RdfQuadruple( observationTime, "http://w3id.org/ecareathome/patterns/timeinterval.owl#hasLowerTimeStampValue" , sdf.format(new Date()) + "^^http://www.w3.org/2001/XMLSchema#dateTime", System.currentTimeMillis());
-				this.put(q);
-
-				Thread.sleep(sleepTime);
-
-			} catch(Exception e){
-				e.printStackTrace();
-			}
-		}
-
+	public long getPeriod() {
+		return sleepTime;
 	}
 
+	public void tick() {
+		boolean isCouch = random.nextBoolean();
+		emit("couch_sensor", isCouch);
+	}
 
+	/**
+	 * Publishes one reading of {@code sensor}.
+	 */
+	public void emit(String sensor, boolean isCouch) {
+		String observationIndex = observationIds.next();
+		String observationTime = observationIndex + "time";
+
+		String observation = "_:" + observationIndex;
+		String now = TimestampLiterals.getDefault().now();
+
+		putObservation(
+				observation, DUL_IS_OBSERVABLE_AT, observationTime,
+				observation, "http://www.w3.org/ns/sosa#isObservedBy", sensor,
+				observation, "http://www.w3.org/ns/sosa#hasSimpleResult", LiteralEncoder.booleanLiteral(isCouch),
+				observationTime, TIME_HAS_UPPER_TIMESTAMP, now,
+				observationTime, TIME_HAS_LOWER_TIMESTAMP, now);
+	}
 
 }
@@ -0,0 +1,174 @@
+package eu.larkc.csparql.eu.tsp.test.streamer;
+
+import eu.larkc.csparql.eu.tsp.test.replay.ObservationSource;
+import eu.larkc.csparql.eu.tsp.test.replay.ReplayClock;
+import eu.larkc.csparql.eu.tsp.test.replay.SensorReading;
+import eu.larkc.csparql.runtime.ShardedEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads the home sensor log once, on a single thread, and routes every reading to the
+ * registered {@link HomeStreamer}s that accept it. All the streams are paced by the same
+ * {@link ReplayClock}, so they stay aligned on the recorded time.
+ * With {@link #setShards(int) shards}, a stream added for one shard only gets the readings of
+ * the homes of that shard ({@link ShardedEngine#shardOf(String, int)}); the shard of a reading
+ * is computed once, whatever the number of streams.
+ * The streams must be registered in the engine by the caller.
+ */
+public class HomeLogRouter implements Runnable {
+
+    private static Logger logger = LoggerFactory.getLogger(HomeLogRouter.class);
+
+    /** Shard of the streams that get the readings of every home. */
+    public static final int ALL_SHARDS = -1;
+
+    private final String fileName;
+    private volatile HomeStreamer[] streams = new HomeStreamer[0];
+    // guarded by this: shard of each of the streams
+    private int[] streamShards = new int[0];
+    /** Streams to feed, by shard of the reading. */
+    private volatile HomeStreamer[][] routes = {new HomeStreamer[0]};
+    private ReplayClock replayClock;
+    private ObservationSource source;
+    private volatile boolean stopped;
+
+    public HomeLogRouter(long sleepTime) {
+        this(HomeStreamer.DEFAULT_LOG_FILE, sleepTime);
+    }
+
+    public HomeLogRouter(String fileName, long sleepTime) {
+        this.fileName = fileName;
+        this.replayClock = ReplayClock.fixedDelay(sleepTime);
+    }
+
+    public void setReplayClock(ReplayClock replayClock) {
+        this.replayClock = replayClock;
+    }
+
+    /**
+     * Replays {@code source} instead of opening {@code fileName}; the router closes it at the
+     * end of the replay.
+     */
+    public void setSource(ObservationSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Splits the homes in {@code shards} shards, see {@link #addStream(HomeStreamer, int)}.
+     * Must be called before the replay.
+     */
+    public synchronized void setShards(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("At least one shard is needed: " + shards);
+        }
+        routes = new HomeStreamer[shards][];
+        updateRoutes();
+    }
+
+    /** Adds a stream to feed; may be called while the log is being replayed. */
+    public void addStream(HomeStreamer stream) {
+        addStream(stream, ALL_SHARDS);
+    }
+
+    /**
+     * Adds a stream fed with the readings of the homes of {@code shard} only, or of every home
+     * for {@link #ALL_SHARDS}; may be called while the log is being replayed.
+     */
+    public synchronized void addStream(HomeStreamer stream, int shard) {
+        if (shard != ALL_SHARDS && (shard < 0 || shard >= routes.length)) {
+            throw new IllegalArgumentException("No shard " + shard + " out of " + routes.length);
+        }
+        HomeStreamer[] current = streams;
+        HomeStreamer[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = stream;
+        streamShards = Arrays.copyOf(streamShards, current.length + 1);
+        streamShards[current.length] = shard;
+        streams = updated;
+        updateRoutes();
+    }
+
+    public synchronized void removeStream(HomeStreamer stream) {
+        HomeStreamer[] current = streams;
+        int index = Arrays.asList(current).indexOf(stream);
+        if (index >= 0) {
+            HomeStreamer[] updated = new HomeStreamer[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            int[] shards = new int[current.length - 1];
+            System.arraycopy(streamShards, 0, shards, 0, index);
+            System.arraycopy(streamShards, index + 1, shards, index, current.length - index - 1);
+            streamShards = shards;
+            streams = updated;
+            updateRoutes();
+        }
+    }
+
+    private void updateRoutes() {
+        HomeStreamer[][] updated = new HomeStreamer[routes.length][];
+        HomeStreamer[] current = streams;
+        for (int shard = 0; shard < updated.length; shard++) {
+            int count = 0;
+            HomeStreamer[] route = new HomeStreamer[current.length];
+            for (int s = 0; s < current.length; s++) {
+                if (streamShards[s] == ALL_SHARDS || streamShards[s] == shard) {
+                    route[count++] = current[s];
+                }
+            }
+            updated[shard] = Arrays.copyOf(route, count);
+        }
+        routes = updated;
+    }
+
+    /** Ends the replay after the current reading; the streams are left running. */
+    public void stop() {
+        stopped = true;
+    }
+
+    public void run() {
+
+        try (ObservationSource source = this.source != null ? this.source : ObservationSource.open(fileName)) {
+            SensorReading reading = new SensorReading();
+            String[] values = new String[0];
+
+            while (!stopped && source.next(reading)) {
+                try {
+                    HomeStreamer[][] shards = routes;
+                    HomeStreamer[] targets = shards[ShardedEngine.shardOf(reading.getHome(), shards.length)];
+                    if (values.length < targets.length) {
+                        values = new String[targets.length];
+                    }
+                    boolean accepted = false;
+                    for (int s = 0; s < targets.length; s++) {
+                        values[s] = targets[s].accept(reading);
+                        accepted |= values[s] != null;
+                    }
+                    if (!accepted) {
+                        continue;
+                    }
+
+                    long lag = replayClock.awaitEmission(reading.getTimestamp());
+                    for (int s = 0; s < targets.length; s++) {
+                        if (values[s] != null) {
+                            targets[s].publish(reading, values[s], lag);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    logger.error(e.getMessage(), e);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Cannot replay " + fileName, e);
+        } finally {
+            for (HomeStreamer stream : streams) {
+                stream.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package eu.larkc.csparql.eu.tsp.test.streamer;
+
+import eu.larkc.csparql.eu.tsp.test.literal.LiteralEncoder;
+import eu.larkc.csparql.eu.tsp.test.literal.TimestampLiterals;
+import eu.larkc.csparql.eu.tsp.test.replay.ObservationSource;
+import eu.larkc.csparql.eu.tsp.test.replay.ReplayClock;
+import eu.larkc.csparql.eu.tsp.test.replay.SensorReading;
+import eu.larkc.csparql.eu.tsp.test.sensor.SensorInfo;
+import eu.larkc.csparql.runtime.ProgressLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Replays the home sensor log (ann.txt: timestamp, sensor id, value separated by tabs) and
+ * turns every reading accepted by {@link #normalizeValue(String, CharSequence)} into an
+ * observation. {@code fileName} may also name a binary or gzip log, a directory of logs,
+ * stdin or a TCP socket (see {@link ObservationSource#open(String)}), or any
+ * {@link ObservationSource} can be given to {@link #setSource(ObservationSource)}.
+ * Emission is paced by a {@link ReplayClock}: a fixed {@code sleepTime} between two
+ * observations by default, or the recorded timestamps with a speed-up factor.
+ * A streamer either replays the log on its own thread ({@link #start()}) or is fed by a
+ * {@link HomeLogRouter} shared with other streams.
+ * Bursts of identical readings can be coalesced with {@link #setDebounceInterval(long)}.
+ */
+public abstract class HomeStreamer extends ObservationStream implements Runnable {
+
+    // dataset path
+    public static final String DEFAULT_LOG_FILE = "D:/CSPARQL-ReadyToGoPack/examples_files/ann.txt";
+
+    protected long sleepTime;
+    protected String baseUri;
+    protected String fileName;
+    protected ReplayClock replayClock;
+    private ObservationSource source;
+    private volatile ObservationDebouncer debouncer;
+
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+    protected final ProgressLogger progress = new ProgressLogger(logger, getIRI());
+
+    public HomeStreamer(String iri, String baseUri, long sleepTime) {
+        this(iri, baseUri, sleepTime, DEFAULT_LOG_FILE);
+    }
+
+    public HomeStreamer(String iri, String baseUri, long sleepTime, String fileName) {
+        super(iri);
+        this.sleepTime = sleepTime;
+        this.baseUri = baseUri;
+        this.fileName = fileName;
+        this.replayClock = ReplayClock.fixedDelay(sleepTime);
+    }
+
+    /** Replaces the pacing of the next replay, e.g. {@code ReplayClock.eventTime(60)}. */
+    public void setReplayClock(ReplayClock replayClock) {
+        this.replayClock = replayClock;
+    }
+
+    /**
+     * Replays {@code source} instead of opening {@code fileName}; the streamer closes it at the
+     * end of the replay.
+     */
+    public void setSource(ObservationSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Coalesces the identical readings of a sensor within {@code millis} of the first one
+     * into a single observation, whose lower and upper timestamps span the run and which
+     * carries the number of readings as {@link #ECARE_READING_COUNT}; queries counting
+     * readings must then SUM that count. 0, the default, publishes every reading.
+     */
+    public void setDebounceInterval(long millis) {
+        ObservationDebouncer previous = debouncer;
+        debouncer = millis > 0 ? new ObservationDebouncer(this, millis) : null;
+        if (previous != null) {
+            previous.flush();
+        }
+    }
+
+    /** Publishes the readings held back by debouncing. */
+    public void flush() {
+        ObservationDebouncer current = debouncer;
+        if (current != null) {
+            current.flush();
+        }
+    }
+
+    /**
+     * Returns the typed literal to publish for this reading, or null when the reading does not
+     * belong to this stream.
+     */
+    protected abstract String normalizeValue(String typeCapteur, CharSequence valeurCapteur);
+
+    public void run() {
+
+        try (ObservationSource source = this.source != null ? this.source : ObservationSource.open(fileName)) {
+            SensorReading reading = new SensorReading();
+
+            while (!isStopped() && source.next(reading)) {
+                try {
+                    String valeurCapteurNormalize = accept(reading);
+                    if (valeurCapteurNormalize != null) {
+                        long lag = replayClock.awaitEmission(reading.getTimestamp());
+                        publish(reading, valeurCapteurNormalize, lag);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            flush();
+        }
+    }
+
+    /**
+     * Returns the normalized value to publish for {@code reading}, or null if the reading is
+     * not for this stream or the stream is stopped.
+     */
+    protected String accept(SensorReading reading) {
+        if (isStopped() || !reading.getSensor().isKnown()) {
+            return null;
+        }
+        return normalizeValue(reading.getSensorType(), reading.getValue());
+    }
+
+    /**
+     * Sends the observation carried by {@code reading}, with the value returned by
+     * {@link #accept(SensorReading)}. Pacing is left to the caller, which reports how late
+     * the reading is in {@code lagMillis}.
+     */
+    protected void publish(SensorReading reading, String valeurCapteurNormalize, long lagMillis) {
+        long now = System.currentTimeMillis();
+        ObservationDebouncer current = debouncer;
+        if (current != null) {
+            current.offer(reading.getSensor(), valeurCapteurNormalize, reading.getTimestamp(), now);
+        } else {
+            emit(reading.getSensor(), valeurCapteurNormalize, now, now, 0);
+        }
+        progress.record(lagMillis, reading);
+    }
+
+    /**
+     * Sends one observation of {@code sensor} spanning {@code lowerMillis} to
+     * {@code upperMillis}; a {@code count} above 0 is published as the number of readings.
+     */
+    void emit(SensorInfo sensor, String value, long lowerMillis, long upperMillis, int count) {
+        String observationIndex = observationIds.next();
+        String observationTime = observationIndex + "time";
+
+        String observation = "_:" + observationIndex;
+        TimestampLiterals timestamps = TimestampLiterals.getDefault();
+        String upper = timestamps.dateTime(upperMillis);
+        String lower = lowerMillis == upperMillis ? upper : timestamps.dateTime(lowerMillis);
+
+        if (count > 0) {
+            putObservation(
+                    observation, DUL_IS_OBSERVABLE_AT, observationTime,
+                    observation, SOSA_IS_OBSERVED_BY, sensor.getSensorIri(),
+                    observation, SOSA_MADE_BY_SENSOR, sensor.getTypeIri(),
+                    observation, DUL_HAS_LOCATION, sensor.getRoomIri(),
+                    observation, SOSA_HAS_SIMPLE_RESULT, value,
+                    observation, ECARE_READING_COUNT, LiteralEncoder.integerLiteral(count),
+                    observationTime, TIME_HAS_UPPER_TIMESTAMP, upper,
+                    observationTime, TIME_HAS_LOWER_TIMESTAMP, lower);
+        } else {
+            putObservation(
+                    observation, DUL_IS_OBSERVABLE_AT, observationTime,
+                    observation, SOSA_IS_OBSERVED_BY, sensor.getSensorIri(),
+                    observation, SOSA_MADE_BY_SENSOR, sensor.getTypeIri(),
+                    observation, DUL_HAS_LOCATION, sensor.getRoomIri(),
+                    observation, SOSA_HAS_SIMPLE_RESULT, value,
+                    observationTime, TIME_HAS_UPPER_TIMESTAMP, upper,
+                    observationTime, TIME_HAS_LOWER_TIMESTAMP, lower);
+        }
+    }
+}
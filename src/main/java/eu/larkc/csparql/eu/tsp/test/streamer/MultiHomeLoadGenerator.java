@@ -0,0 +1,223 @@
+package eu.larkc.csparql.eu.tsp.test.streamer;
+
+import eu.larkc.csparql.core.engine.CsparqlEngineImpl;
+import eu.larkc.csparql.core.engine.CsparqlQueryResultProxy;
+import eu.larkc.csparql.eu.tsp.test.couchAgent;
+import eu.larkc.csparql.eu.tsp.test.tvAgent;
+import eu.larkc.csparql.runtime.OverflowPolicy;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Synthetic load for capacity tests: simulates {@code homes} homes with {@code sensorsPerType}
+ * tv (numeric) and couch (boolean) sensors each, publishing on a {@link TvStreamer} and a
+ * {@link CouchStreamer} at a target aggregate rate.
+ *
+ * The homes are split into slices ticked by a fixed-size scheduler, not one thread per sensor.
+ * Each tick emits what the slice owes since the start, so late ticks catch up (by at most one
+ * second of events) and the achieved rate only falls behind the requested one when the
+ * producers or the engine are saturated. Both rates are logged periodically.
+ */
+public class MultiHomeLoadGenerator {
+
+    private static Logger logger = LoggerFactory.getLogger(MultiHomeLoadGenerator.class);
+
+    private static final long TICK_MILLIS = 50;
+    private static final long REPORT_MILLIS = 5000;
+
+    private final TvStreamer tvStream;
+    private final CouchStreamer couchStream;
+    private final String[][] tvSensors;
+    private final String[][] couchSensors;
+    private final double eventsPerSecond;
+    private final int threads;
+
+    private final AtomicLong emitted = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+    private volatile long startNanos;
+    private long lastReportNanos;
+    private long lastReportCount;
+
+    public MultiHomeLoadGenerator(TvStreamer tvStream, CouchStreamer couchStream, String baseUri,
+                                  int homes, int sensorsPerType, double eventsPerSecond, int threads) {
+        if (homes < 1 || sensorsPerType < 1 || threads < 1 || !(eventsPerSecond > 0)) {
+            throw new IllegalArgumentException("homes, sensors per type, threads and rate must be positive");
+        }
+        this.tvStream = tvStream;
+        this.couchStream = couchStream;
+        this.eventsPerSecond = eventsPerSecond;
+        this.threads = Math.min(threads, homes);
+        this.tvSensors = new String[homes][sensorsPerType];
+        this.couchSensors = new String[homes][sensorsPerType];
+        for (int h = 0; h < homes; h++) {
+            for (int s = 0; s < sensorsPerType; s++) {
+                tvSensors[h][s] = baseUri + "home" + h + "/tv_sensor" + s;
+                couchSensors[h][s] = baseUri + "home" + h + "/couch_sensor" + s;
+            }
+        }
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newScheduledThreadPool(threads);
+        startNanos = System.nanoTime();
+        lastReportNanos = startNanos;
+
+        int homes = tvSensors.length;
+        for (int t = 0; t < threads; t++) {
+            int firstHome = homes * t / threads;
+            int endHome = homes * (t + 1) / threads;
+            double sliceRate = eventsPerSecond * (endHome - firstHome) / homes;
+            scheduler.scheduleAtFixedRate(new Slice(firstHome, endHome, sliceRate), 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                report();
+            }
+        }, REPORT_MILLIS, REPORT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            logger.info("Load generator stopped: requested {} events/s, achieved {} events/s overall",
+                    eventsPerSecond, String.format("%.1f", getAchievedRate()));
+        }
+    }
+
+    public double getRequestedRate() {
+        return eventsPerSecond;
+    }
+
+    /** Events per second since {@link #start()}. */
+    public double getAchievedRate() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? emitted.get() / seconds : 0;
+    }
+
+    public long getEmittedCount() {
+        return emitted.get();
+    }
+
+    private synchronized void report() {
+        long now = System.nanoTime();
+        long count = emitted.get();
+        double windowRate = (count - lastReportCount) / ((now - lastReportNanos) / 1e9);
+        lastReportNanos = now;
+        lastReportCount = count;
+        logger.info("Load generator: requested {} events/s, achieved {} events/s (last {} s), {} events/s overall",
+                eventsPerSecond, String.format("%.1f", windowRate), REPORT_MILLIS / 1000, String.format("%.1f", getAchievedRate()));
+        logger.info("Hand-off queues: tv {}/{} quads ({} dropped), couch {}/{} quads ({} dropped)",
+                tvStream.getQueueDepth(), tvStream.getCapacity(), tvStream.getDroppedCount(),
+                couchStream.getQueueDepth(), couchStream.getCapacity(), couchStream.getDroppedCount());
+    }
+
+    /** Homes [firstHome, endHome) and their share of the aggregate rate. */
+    private class Slice implements Runnable {
+
+        private final int firstHome;
+        private final int endHome;
+        private final double rate;
+        private long sent;
+
+        Slice(int firstHome, int endHome, double rate) {
+            this.firstHome = firstHome;
+            this.endHome = endHome;
+            this.rate = rate;
+        }
+
+        public void run() {
+            try {
+                double elapsed = (System.nanoTime() - startNanos) / 1e9;
+                long due = (long) (rate * elapsed) - sent;
+                long max = (long) Math.ceil(rate);
+                if (due > max) {
+                    // do not try to catch up more than one second of backlog
+                    sent += due - max;
+                    due = max;
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (long i = 0; i < due; i++) {
+                    int home = random.nextInt(firstHome, endHome);
+                    int sensor = random.nextInt(tvSensors[home].length);
+                    if (random.nextBoolean()) {
+                        tvStream.emit(tvSensors[home][sensor], random.nextInt(100));
+                    } else {
+                        couchStream.emit(couchSensors[home][sensor], random.nextBoolean());
+                    }
+                    sent++;
+                    emitted.incrementAndGet();
+                }
+            } catch (RuntimeException e) {
+                // an exception would cancel the periodic task
+                logger.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    /*
+     * Capacity test of the tv and couch queries.
+     * Arguments: homes, sensors per type, events per second, producer threads, duration in seconds.
+     */
+    public static void main(String[] args) {
+        int homes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int sensorsPerType = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        double rate = args.length > 2 ? Double.parseDouble(args[2]) : 1000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        long duration = args.length > 4 ? Long.parseLong(args[4]) : 60;
+
+        try {
+            DOMConfigurator.configure("log4j_configuration/csparql_async_log4j.xml");
+
+            CsparqlEngineImpl engine = new CsparqlEngineImpl();
+            engine.initialize();
+
+            TvStreamer tv = new TvStreamer("http://ecareathome.org/stream#tv", "", 0L);
+            CouchStreamer couch = new CouchStreamer("http://ecareathome.org/stream#couch", "", 0L);
+            tv.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+            couch.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+            engine.registerStream(tv);
+            engine.registerStream(couch);
+
+            final AtomicLong results = new AtomicLong();
+            Observer counter = new Observer() {
+                public void update(Observable o, Object arg) {
+                    results.incrementAndGet();
+                }
+            };
+            CsparqlQueryResultProxy cleanTv = engine.registerQuery(tvAgent.STREAM_CLEAN_TV, false);
+            CsparqlQueryResultProxy cleanCouch = engine.registerQuery(couchAgent.STREAM_CLEAN_COUCH, false);
+            cleanTv.addObserver(counter);
+            cleanCouch.addObserver(counter);
+
+            MultiHomeLoadGenerator generator = new MultiHomeLoadGenerator(tv, couch, "http://ecareathome.org/", homes, sensorsPerType, rate, threads);
+            generator.start();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(duration));
+            generator.stop();
+            tv.drain(5000);
+            couch.drain(5000);
+
+            logger.info("{} events sent, {} quads dropped, {} query results received", generator.getEmittedCount(),
+                    tv.getDroppedCount() + couch.getDroppedCount(), results.get());
+
+            engine.unregisterQuery(cleanTv.getId());
+            engine.unregisterQuery(cleanCouch.getId());
+            engine.unregisterStream(tv.getIRI());
+            engine.unregisterStream(couch.getIRI());
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+}
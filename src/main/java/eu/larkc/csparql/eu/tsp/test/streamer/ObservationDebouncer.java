@@ -0,0 +1,145 @@
+package eu.larkc.csparql.eu.tsp.test.streamer;
+
+import eu.larkc.csparql.eu.tsp.test.replay.LogTimestamps;
+import eu.larkc.csparql.eu.tsp.test.sensor.SensorInfo;
+import eu.larkc.csparql.runtime.PeriodicProducer;
+import eu.larkc.csparql.runtime.StreamerRuntime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces the bursts of identical readings of a sensor (ON, ON, ON...) into one
+ * observation carrying the number of readings.
+ *
+ * A run starts with a reading and absorbs the following readings of the same sensor with the
+ * same value, up to {@code interval} ms after its first reading (recorded time when known).
+ * The run is handed to {@link HomeStreamer#emit} when the value changes, when the interval
+ * has elapsed or on {@link #flush()}. The interval is checked as readings of any sensor
+ * arrive and, while runs are open, by a tick on the shared {@link StreamerRuntime} against
+ * the wall clock: with a live source or a quiet home, the last run of a sensor still reaches
+ * the engine about {@code interval} ms after its first reading, in time for its window.
+ * Runs are emitted oldest first. The tick runs on a runtime thread, where the owner never
+ * waits for room: a run that does not fit in its full BLOCK queue is dropped and counted.
+ */
+final class ObservationDebouncer implements PeriodicProducer {
+
+    private final HomeStreamer owner;
+    private final long interval;
+    private final Map<String, Run> runs = new HashMap<String, Run>();
+    private final List<Run> open = new ArrayList<Run>();
+    private long nextExpiry = Long.MAX_VALUE;
+    private StreamerRuntime.Registration registration;
+
+    ObservationDebouncer(HomeStreamer owner, long interval) {
+        this.owner = owner;
+        this.interval = interval;
+    }
+
+    synchronized void offer(SensorInfo sensor, String value, long eventTime, long now) {
+        long time = eventTime != LogTimestamps.INVALID ? eventTime : now;
+
+        Run run = runs.get(sensor.getId());
+        if (run == null) {
+            run = new Run();
+            runs.put(sensor.getId(), run);
+        }
+        if (run.count > 0 && run.value.equals(value) && time - run.firstTime < interval) {
+            run.count++;
+            run.lastMillis = now;
+        } else {
+            if (run.count > 0) {
+                close(run);
+            }
+            run.sensor = sensor;
+            run.value = value;
+            run.firstTime = time;
+            run.firstMillis = now;
+            run.lastMillis = now;
+            run.count = 1;
+            open.add(run);
+            nextExpiry = Math.min(nextExpiry, time + interval);
+            if (registration == null) {
+                registration = StreamerRuntime.getShared().register(this);
+            }
+        }
+
+        if (time >= nextExpiry) {
+            expire(time);
+        }
+    }
+
+    /** Emits every pending run. */
+    synchronized void flush() {
+        for (Run run : open) {
+            emit(run);
+        }
+        open.clear();
+        nextExpiry = Long.MAX_VALUE;
+        cancelTicks();
+    }
+
+    public long getPeriod() {
+        return Math.max(10L, interval / 4);
+    }
+
+    /** Emits the runs opened at least {@code interval} ms ago, in wall-clock time. */
+    public synchronized void tick() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Run> it = open.iterator(); it.hasNext(); ) {
+            Run run = it.next();
+            if (now - run.firstMillis >= interval) {
+                emit(run);
+                it.remove();
+            }
+        }
+        if (open.isEmpty()) {
+            nextExpiry = Long.MAX_VALUE;
+            cancelTicks();
+        }
+    }
+
+    private void cancelTicks() {
+        if (registration != null) {
+            registration.cancel();
+            registration = null;
+        }
+    }
+
+    private void expire(long time) {
+        nextExpiry = Long.MAX_VALUE;
+        for (Iterator<Run> it = open.iterator(); it.hasNext(); ) {
+            Run run = it.next();
+            long expiry = run.firstTime + interval;
+            if (expiry <= time) {
+                emit(run);
+                it.remove();
+            } else {
+                nextExpiry = Math.min(nextExpiry, expiry);
+            }
+        }
+    }
+
+    private void close(Run run) {
+        emit(run);
+        open.remove(run);
+    }
+
+    private void emit(Run run) {
+        owner.emit(run.sensor, run.value, run.firstMillis, run.lastMillis, run.count);
+        run.count = 0;
+    }
+
+    private static final class Run {
+
+        SensorInfo sensor;
+        String value;
+        long firstTime;
+        long firstMillis;
+        long lastMillis;
+        int count;
+    }
+}
@@ -0,0 +1,50 @@
+package eu.larkc.csparql.eu.tsp.test.streamer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the blank-node labels of the observations, e.g. "obs3_1k2f".
+ *
+ * Each sequence has its own prefix, so two streamers never produce the same label, and
+ * hands out counter values by blocks: a producer thread takes a block of
+ * {@link #BLOCK_SIZE} values with one atomic increment and then numbers its observations
+ * locally. Labels never repeat within a sequence, contrary to random ints, and no
+ * SecureRandom is involved, contrary to UUIDs.
+ */
+public final class ObservationIds {
+
+    static final int BLOCK_SIZE = 1024;
+
+    private static final AtomicInteger SEQUENCES = new AtomicInteger();
+
+    private final String prefix;
+    private final AtomicLong nextBlock = new AtomicLong();
+    private final ThreadLocal<long[]> block = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            // {next value, end of block}
+            return new long[2];
+        }
+    };
+
+    private ObservationIds(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /** A new sequence, with a prefix no other sequence of this JVM uses. */
+    public static ObservationIds newSequence() {
+        return new ObservationIds("obs" + Integer.toString(SEQUENCES.getAndIncrement(), 36) + "_");
+    }
+
+    /** Next label, to be used as "_:" + label. */
+    public String next() {
+        long[] range = block.get();
+        if (range[0] == range[1]) {
+            long start = nextBlock.getAndIncrement() * BLOCK_SIZE;
+            range[0] = start;
+            range[1] = start + BLOCK_SIZE;
+        }
+        return prefix + Long.toString(range[0]++, 36);
+    }
+}
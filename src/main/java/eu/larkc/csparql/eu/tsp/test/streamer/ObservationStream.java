@@ -0,0 +1,56 @@
+package eu.larkc.csparql.eu.tsp.test.streamer;
+
+import eu.larkc.csparql.cep.api.RdfQuadruple;
+import eu.larkc.csparql.runtime.BufferedRdfStream;
+
+/**
+ * Base class of the streamers that publish sensor observations.
+ *
+ * An observation is made of several triples (observation node, sensor, value, time
+ * interval...). {@link #putObservation(String...)} publishes them as one unit: a single
+ * timestamp, so the observation can never straddle a window boundary, and a single
+ * queued batch, so the triples of two observations are never interleaved and an overloaded
+ * stream drops whole observations.
+ * Observation nodes are labelled from the stream's own {@link ObservationIds} sequence.
+ */
+public abstract class ObservationStream extends BufferedRdfStream {
+
+    public static final String DUL_IS_OBSERVABLE_AT = "http://www.ontologydesignpatterns.org/ont/dul/DUL.owl#isObservableAt";
+    public static final String DUL_HAS_LOCATION = "http://www.ontologydesignpatterns.org/ont/dul/DUL.owl#hasLocation";
+    public static final String SOSA_IS_OBSERVED_BY = "http://www.w3.org/ns/sosa/isObservedBy";
+    public static final String SOSA_MADE_BY_SENSOR = "http://www.w3.org/ns/sosa/madeBySensor";
+    public static final String SOSA_HAS_SIMPLE_RESULT = "http://www.w3.org/ns/sosa/hasSimpleResult";
+    public static final String TIME_HAS_UPPER_TIMESTAMP = "http://w3id.org/ecareathome/patterns/timeinterval.owl#hasUpperTimeStampValue";
+    public static final String TIME_HAS_LOWER_TIMESTAMP = "http://w3id.org/ecareathome/patterns/timeinterval.owl#hasLowerTimeStampValue";
+    /** Number of identical readings coalesced into a debounced observation. */
+    public static final String ECARE_READING_COUNT = "http://ecareathome.org/stream#count";
+
+    protected final ObservationIds observationIds = ObservationIds.newSequence();
+
+    public ObservationStream(String iri) {
+        super(iri);
+    }
+
+    /**
+     * Publishes the triples of one observation, given as subject, predicate, object,
+     * subject, predicate, object...
+     */
+    protected void putObservation(String... triples) {
+        putObservation(System.currentTimeMillis(), triples);
+    }
+
+    /**
+     * Publishes the triples of one observation with the given timestamp, e.g. the original
+     * timestamp of the data a derived event was computed from.
+     */
+    protected void putObservation(long timestamp, String... triples) {
+        if (triples.length % 3 != 0) {
+            throw new IllegalArgumentException("Expected subject/predicate/object triples, got " + triples.length + " terms");
+        }
+        RdfQuadruple[] batch = new RdfQuadruple[triples.length / 3];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new RdfQuadruple(triples[3 * i], triples[3 * i + 1], triples[3 * i + 2], timestamp);
+        }
+        offer(batch);
+    }
+}
@@ -0,0 +1,65 @@
+package eu.larkc.csparql.eu.tsp.test.streamer;
+
+import eu.larkc.csparql.eu.tsp.test.literal.LiteralEncoder;
+import eu.larkc.csparql.eu.tsp.test.replay.SensorReading;
+import eu.larkc.csparql.eu.tsp.test.sensor.SensorInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Publishes the readings of one sensor family only ({@link SensorInfo#getFamily()}, as
+ * classified by the sensor registry), so that a query over e.g. temperatures only windows
+ * temperature observations. ON/OFF-like values are published as xsd:boolean, the others as
+ * by {@link LiteralEncoder#encode(CharSequence)}. Meant to be fed by a {@link HomeLogRouter},
+ * usually through {@link #partition(HomeLogRouter, String, long, String...)}.
+ */
+public class SensorFamilyStreamer extends HomeStreamer {
+
+    private final String family;
+
+    public SensorFamilyStreamer(String iri, String baseUri, long sleepTime, String family) {
+        super(iri, baseUri, sleepTime);
+        this.family = family;
+    }
+
+    /**
+     * Creates one stream per family, named {@code streamNamespace + family} (e.g.
+     * {@code http://ecareathome.org/stream#door}), and adds them to {@code router}. The
+     * streams must still be registered in the engine.
+     *
+     * @param families the families to publish, all of {@link SensorInfo#FAMILIES} if none
+     */
+    public static List<SensorFamilyStreamer> partition(HomeLogRouter router, String streamNamespace, long sleepTime,
+                                                       String... families) {
+        if (families.length == 0) {
+            families = SensorInfo.FAMILIES;
+        }
+        List<SensorFamilyStreamer> streams = new ArrayList<SensorFamilyStreamer>(families.length);
+        for (String family : families) {
+            SensorFamilyStreamer stream = new SensorFamilyStreamer(streamNamespace + family, "", sleepTime, family);
+            router.addStream(stream);
+            streams.add(stream);
+        }
+        return streams;
+    }
+
+    public String getFamily() {
+        return family;
+    }
+
+    @Override
+    protected String accept(SensorReading reading) {
+        if (!family.equals(reading.getSensor().getFamily())) {
+            return null;
+        }
+        return super.accept(reading);
+    }
+
+    @Override
+    protected String normalizeValue(String typeCapteur, CharSequence valeurCapteur) {
+        String literal = LiteralEncoder.booleanToken(valeurCapteur);
+        return literal != null ? literal : LiteralEncoder.encode(valeurCapteur);
+    }
+
+}
@@ -0,0 +1,27 @@
+package eu.larkc.csparql.eu.tsp.test.streamer;
+
+import eu.larkc.csparql.eu.tsp.test.literal.LiteralEncoder;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Publishes the readings of the given sensor types only (e.g. "temperature_sensors"),
+ * whatever their value. Meant to be fed by a {@link HomeLogRouter}.
+ */
+public class SensorTypeStreamer extends HomeStreamer {
+
+    private final Set<String> sensorTypes;
+
+    public SensorTypeStreamer(String iri, String baseUri, long sleepTime, String... sensorTypes) {
+        super(iri, baseUri, sleepTime);
+        this.sensorTypes = new HashSet<String>(Arrays.asList(sensorTypes));
+    }
+
+    @Override
+    protected String normalizeValue(String typeCapteur, CharSequence valeurCapteur) {
+        return sensorTypes.contains(typeCapteur) ? LiteralEncoder.encode(valeurCapteur) : null;
+    }
+
+}
@@ -20,26 +20,19 @@
  ******************************************************************************/
 package eu.larkc.csparql.eu.tsp.test.streamer;
 
-import eu.larkc.csparql.cep.api.RdfQuadruple;
-import eu.larkc.csparql.cep.api.RdfStream;
+import eu.larkc.csparql.eu.tsp.test.literal.LiteralEncoder;
+import eu.larkc.csparql.eu.tsp.test.literal.TimestampLiterals;
+import eu.larkc.csparql.runtime.PeriodicProducer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.Random;
-import java.util.UUID;
-import java.util.stream.Stream;
 
-import static eu.larkc.csparql.eu.tsp.test.Utils.*;
-
-public class TvStreamer extends RdfStream implements Runnable  {
+public class TvStreamer extends ObservationStream implements PeriodicProducer  {
 
 	private long sleepTime;
 	private String baseUri;
+	private final Random random = new Random();
 	private static Logger logger = LoggerFactory.getLogger(TvStreamer.class);
 
 	public TvStreamer(String iri, String baseUri, long sleepTime) {
@@ -48,43 +41,31 @@ public class TvStreamer extends RdfStream implements Runnable  {
 		this.baseUri = baseUri;
 	}
 
-	public void run() {
-		Random random = new Random();
-		int sensorIndex;
-		int valeurSensor;
-		int roomIndex;
-		int observationIndex;
-		//int numberOfPerson;
-
-		while (true) {
-			try {
-
-				valeurSensor = random.nextInt(100);
-
-				observationIndex = random.nextInt(Integer.MAX_VALUE);
-				String observationTime = observationIndex + "time";
-
-				RdfQuadruple q = new RdfQuadruple("_:" + observationIndex, "http://www.ontologydesignpatterns.org/ont/dul/DUL.owl#isObservableAt", observationTime, System.currentTimeMillis());
-				this.put(q);
-				q = new RdfQuadruple("_:" + observationIndex, "http://www.w3.org/ns/sosa#isObservedBy", "tv_sensor", System.currentTimeMillis());
-				this.put(q);
-				q = new RdfQuadruple("_:" + observationIndex, "http://www.w3.org/ns/sosa#hasSimpleResult", "\"" + valeurSensor + "\"^^http://www.w3.org/2001/XMLSchema#integer", System.currentTimeMillis());
-				this.put(q);
-
-				SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss+SSS");
-
-				q = new RdfQuadruple(observationTime, "http://w3id.org/ecareathome/patterns/timeinterval.owl#hasUpperTimeStampValue", sdf.format(new Date()) + "^^http://www.w3.org/2001/XMLSchema#dateTime", System.currentTimeMillis());
-				this.put(q);
-				q = new RdfQuadruple(observationTime, "http://w3id.org/ecareathome/patterns/timeinterval.owl#hasLowerTimeStampValue", sdf.format(new Date()) + "^^http://www.w3.org/2001/XMLSchema#dateTime", System.currentTimeMillis());
-				this.put(q);
-
+	public long getPeriod() {
+		return sleepTime;
+	}
 
-				Thread.sleep(sleepTime);
+	public void tick() {
+		int valeurSensor = random.nextInt(100);
+		emit("tv_sensor", valeurSensor);
+	}
 
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-		}
+	/**
+	 * Publishes one reading of {@code sensor}.
+	 */
+	public void emit(String sensor, int valeurSensor) {
+		String observationIndex = observationIds.next();
+		String observationTime = observationIndex + "time";
+
+		String observation = "_:" + observationIndex;
+		String now = TimestampLiterals.getDefault().now();
+
+		putObservation(
+				observation, DUL_IS_OBSERVABLE_AT, observationTime,
+				observation, "http://www.w3.org/ns/sosa#isObservedBy", sensor,
+				observation, "http://www.w3.org/ns/sosa#hasSimpleResult", LiteralEncoder.integerLiteral(valeurSensor),
+				observationTime, TIME_HAS_UPPER_TIMESTAMP, now,
+				observationTime, TIME_HAS_LOWER_TIMESTAMP, now);
 	}
 
 }
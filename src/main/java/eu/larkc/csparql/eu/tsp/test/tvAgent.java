@@ -3,7 +3,10 @@ package eu.larkc.csparql.eu.tsp.test;
 import eu.larkc.csparql.core.engine.ConsoleFormatter;
 import eu.larkc.csparql.core.engine.CsparqlEngineImpl;
 import eu.larkc.csparql.core.engine.CsparqlQueryResultProxy;
+import eu.larkc.csparql.eu.tsp.test.operator.AggregateQueryRecognizer;
+import eu.larkc.csparql.eu.tsp.test.operator.ObservationWindowOperator;
 import eu.larkc.csparql.eu.tsp.test.streamer.TvStreamer;
+import eu.larkc.csparql.runtime.AsyncObserver;
 
 import org.apache.log4j.PropertyConfigurator;
 import org.slf4j.Logger;
@@ -13,8 +16,57 @@ public class tvAgent {
 
     private static Logger logger = LoggerFactory.getLogger(tvAgent.class);
 
+    public static final String STREAM_CLEAN_TV = "REGISTER STREAM cleantv AS " +
+            "PREFIX :<http://ecareathome.org/stream#> " +
+            "PREFIX rdf:<http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
+            "PREFIX xsd:<http://www.w3.org/2001/XMLSchema#> " +
+            "PREFIX dul:<http://www.ontologydesignpatterns.org/ont/dul/DUL.owl#> " +
+            "PREFIX time:<http://w3id.org/ecareathome/patterns/timeinterval.owl#> " +
+            "PREFIX event:<http://w3id.org/ecareathome/patterns/event.owl#> " +
+            "PREFIX sosa:<http://www.w3.org/ns/sosa#> " +
+            "CONSTRUCT " +
+            "{ " +
+            "_:c0 rdf:type event:ComplexEvent . " +
+            "_:c0 dul:isObservableAt _:c1 . " +
+            "_:c0 sosa:isObservedBy ?sensor . " +
+            "_:c0 sosa:hasSimpleResult ?value . " +
+            "_:c1 rdf:type dul:TimeInterval . " +
+            "_:c1 time:hasUpperTimeStampValue ?maxTime . " +
+            "_:c1 time:hasLowerTimeStampValue ?minTime . " +
+            "} " +
+            "FROM STREAM <http://ecareathome.org/stream#tv> [ RANGE 10s STEP 10s] " +
+            "WHERE " +
+            "{ { SELECT ?sensor ( AVG (?value ) AS ?avg ) ( MAX (?upper ) AS ?maxTime ) " +
+            " ( MIN (?lower ) AS ?minTime ) " +
+            "WHERE { " +
+            "_:b0 sosa:isObservedBy ?sensor ; " +
+            "sosa:hasSimpleResult ?value ; " +
+            "dul:isObservableAt _:b1 . " +
+            "_:b1 time:hasUpperTimeStampValue ?upper ; " +
+            "time:hasLowerTimeStampValue ?lower . " +
+            "} " +
+            "GROUP BY ?sensor " +
+            "} " +
+            "BIND (if (( ?avg <20 ) , false , true ) AS ?value ) " +
+            "BIND ( now() AS ?time ) " +
+            "FILTER bound (?sensor ) " +
+            "}";
+
+    /**
+     * Shows the ComplexEvents of the pre-aggregated cleantv stream. Its own window holds them
+     * back until it closes: up to one more window of delay than the query it replaces.
+     */
+    public static final String QUERY_CLEAN_TV_EVENTS = "REGISTER QUERY cleantvEvents AS " +
+            "CONSTRUCT { ?s ?p ?o } " +
+            "FROM STREAM <http://ecareathome.org/stream#cleantv> [ RANGE 10s STEP 10s] " +
+            "WHERE { ?s ?p ?o }";
+
    /*
      * ECARE-HOME Reasoning example
+     *
+     * With the "preaggregate" argument, cleantv is computed incrementally by the operator
+     * AggregateQueryRecognizer compiles STREAM_CLEAN_TV into, attached to the tv stream, when
+     * the query is recognized; otherwise the query is registered in the engine as usual.
      */
 
     //  startTraitement
@@ -30,55 +82,30 @@ public class tvAgent {
            //The initialization creates the static engine (SPARQL) and the stream engine (CEP)
             engine.initialize();
 
-            String streamCleanTv = "REGISTER STREAM cleantv AS " +
-                    "PREFIX :<http://ecareathome.org/stream#> " +
-                    "PREFIX rdf:<http://www.w3.org/1999/02/22-rdf-syntax-ns#> " +
-                    "PREFIX xsd:<http://www.w3.org/2001/XMLSchema#> " +
-                    "PREFIX dul:<http://www.ontologydesignpatterns.org/ont/dul/DUL.owl#> " +
-                    "PREFIX time:<http://w3id.org/ecareathome/patterns/timeinterval.owl#> " +
-                    "PREFIX event:<http://w3id.org/ecareathome/patterns/event.owl#> " +
-                    "PREFIX sosa:<http://www.w3.org/ns/sosa#> " +
-                    "CONSTRUCT " +
-                    "{ " +
-                    "_:c0 rdf:type event:ComplexEvent . " +
-                    "_:c0 dul:isObservableAt _:c1 . " +
-                    "_:c0 sosa:isObservedBy ?sensor . " +
-                    "_:c0 sosa:hasSimpleResult ?value . " +
-                    "_:c1 rdf:type dul:TimeInterval . " +
-                    "_:c1 time:hasUpperTimeStampValue ?maxTime . " +
-                    "_:c1 time:hasLowerTimeStampValue ?minTime . " +
-                    "} " +
-                    "FROM STREAM <http://ecareathome.org/stream#tv> [ RANGE 10s STEP 10s] " +
-                    "WHERE " +
-                    "{ { SELECT ?sensor ( AVG (?value ) AS ?avg ) ( MAX (?upper ) AS ?maxTime ) " +
-                    " ( MIN (?lower ) AS ?minTime ) " +
-                    "WHERE { " +
-                    "_:b0 sosa:isObservedBy ?sensor ; " +
-                    "sosa:hasSimpleResult ?value ; " +
-                    "dul:isObservableAt _:b1 . " +
-                    "_:b1 time:hasUpperTimeStampValue ?upper ; " +
-                    "time:hasLowerTimeStampValue ?lower . " +
-                    "} " +
-                    "GROUP BY ?sensor " +
-                    "} " +
-                    "BIND (if (( ?avg <20 ) , false , true ) AS ?value ) " +
-                    "BIND ( now() AS ?time ) " +
-                    "FILTER bound (?sensor ) " +
-                    "}";
-
             TvStreamer streamTV = new TvStreamer("http://ecareathome.org/stream#tv", "", 1000L);
 
             //Register new streams in the engine
             engine.registerStream(streamTV);
 
-            Thread TvThread = new Thread(streamTV);
+            CsparqlQueryResultProxy streamQ2;
+            ObservationWindowOperator cleanTv = null;
+            if (args.length > 0 && "preaggregate".equals(args[0])) {
+                cleanTv = AggregateQueryRecognizer.attach(STREAM_CLEAN_TV, streamTV);
+            }
+            if (cleanTv != null) {
+                engine.registerStream(cleanTv);
+                cleanTv.start();
 
-            CsparqlQueryResultProxy streamQ2 = engine.registerQuery(streamCleanTv, false);
+                streamQ2 = engine.registerQuery(QUERY_CLEAN_TV_EVENTS, false);
+            } else {
+                streamQ2 = engine.registerQuery(STREAM_CLEAN_TV, false);
+            }
 
-            streamQ2.addObserver(new ConsoleFormatter());
+            //printed off the engine thread
+            streamQ2.addObserver(new AsyncObserver(new ConsoleFormatter(), "cleantv console"));
 
             //Start streaming data
-            TvThread.start();
+            streamTV.start();
 
 
         } catch (Exception e) {
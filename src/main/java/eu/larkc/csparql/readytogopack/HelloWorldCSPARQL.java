@@ -33,12 +33,12 @@ import eu.larkc.csparql.core.engine.ConsoleFormatter;
 import eu.larkc.csparql.core.engine.CsparqlEngine;
 import eu.larkc.csparql.core.engine.CsparqlEngineImpl;
 import eu.larkc.csparql.core.engine.CsparqlQueryResultProxy;
-import eu.larkc.csparql.core.engine.RDFStreamFormatter;
 import eu.larkc.csparql.readytogopack.streamer.BasicIntegerRDFStreamTestGenerator;
 import eu.larkc.csparql.readytogopack.streamer.BasicRDFStreamTestGenerator;
 import eu.larkc.csparql.readytogopack.streamer.CloudMonitoringRDFStreamTestGenerator;
 import eu.larkc.csparql.readytogopack.streamer.DoorsTestStreamGenerator;
 import eu.larkc.csparql.readytogopack.streamer.LBSMARDFStreamTestGenerator;
+import eu.larkc.csparql.runtime.QueryChannel;
 
 public class HelloWorldCSPARQL {
 
@@ -241,7 +241,7 @@ public class HelloWorldCSPARQL {
 					+ "FROM STREAM <http://myexample.org/stream2> [RANGE 5s STEP 1s] "
 					+ "WHERE { ?s ?p ?o }";
 			tg = new BasicRDFStreamTestGenerator("http://myexample.org/stream1");
-			anotherTg = new RDFStreamFormatter("http://myexample.org/stream2");
+			anotherTg = new QueryChannel("http://myexample.org/stream2");
 			break;
 
 		case PERCENTILE:
@@ -324,7 +324,9 @@ public class HelloWorldCSPARQL {
 			// Attach a Result Formatter to the query result proxy
 
 			if (c1 != null) {
-				c1.addObserver((RDFStreamFormatter) anotherTg);
+				// the results keep the timestamps of the upstream window
+				((QueryChannel) anotherTg).watch(tg, 5000L);
+				c1.addObserver((QueryChannel) anotherTg);
 
 				try {
 					c2 = engine.registerQuery(queryDownStream, false);
@@ -31,9 +31,10 @@ import com.hp.hpl.jena.rdf.model.impl.PropertyImpl;
 import com.hp.hpl.jena.rdf.model.impl.ResourceImpl;
 
 import eu.larkc.csparql.cep.api.RdfQuadruple;
-import eu.larkc.csparql.cep.api.RdfStream;
+import eu.larkc.csparql.runtime.BufferedRdfStream;
+import eu.larkc.csparql.runtime.PeriodicProducer;
 
-public class LBSMARDFStreamTestGenerator extends RdfStream implements Runnable {
+public class LBSMARDFStreamTestGenerator extends BufferedRdfStream implements Runnable, PeriodicProducer {
 
 	/** The logger. */
 	protected final Logger logger = LoggerFactory
@@ -41,57 +42,75 @@ public class LBSMARDFStreamTestGenerator extends RdfStream implements Runnable {
 
 	private int c = 1;
 	private int ct = 1;
-	private boolean keepRunning = false;
+
+	// next follower of the round, -1 when a new round starts
+	private int follower = -1;
+	private int followers;
+	private long period = 500;
 
 	public LBSMARDFStreamTestGenerator(final String iri) {
 		super(iri);
 	}
 
 	public void pleaseStop() {
-		keepRunning = false;
+		stop();
 	}
 
+	/**
+	 * Starts ticking the generator on the shared StreamerRuntime and returns.
+	 */
 	@Override
 	public void run() {
+		start();
+	}
 
+	/**
+	 * 500 ms between the triples of a round, 1000 ms after its last follower, as the
+	 * original loop slept once more at the end of a round.
+	 */
+	public long getPeriod() {
+		return period;
+	}
 
+	/**
+	 * Streams the user of a new round together with its first follower, then the other
+	 * followers, one per tick.
+	 */
+	public void tick() {
 
-		keepRunning = true;
-
-		while (keepRunning) {
+		RdfQuadruple[] batch;
+		if (follower < 0) {
 			final RdfQuadruple q = new RdfQuadruple(super.getIRI()+"/user" + this.c,
 					"http://myexample.org/likes", "http://myexample.org/O" + this.c, System.currentTimeMillis());
-
-			this.put(q);
-			//          logger.info(q.toString());
 			ct++;
 
-			double n = Math.random()*5;
-
-			for (int i=0;i<n;i++) {
-				final RdfQuadruple q1 = new RdfQuadruple(super.getIRI()+"/user" + this.c+i,
-						"http://myexample.org/likes", "http://myexample.org/O" + this.c, System.currentTimeMillis());
-				this.put(q1);
-				//         logger.info(q1.toString());
+			followers = (int) Math.ceil(Math.random()*5);
+			follower = 0;
+			batch = followers > 0 ? new RdfQuadruple[] {q, follower()} : new RdfQuadruple[] {q};
+		} else {
+			batch = new RdfQuadruple[] {follower()};
+		}
+		this.offer(batch);
 
-				try {
-					Thread.sleep(500);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-				ct++;
-			}
+		if (follower < followers) {
+			period = 500;
+			return;
+		}
 
-			if(c%10==0) logger.info(ct+ " triples streamed so far");
+		if(c%10==0) logger.info(ct+ " triples streamed so far");
 
+		period = followers > 0 ? 1000 : 500;
+		follower = -1;
+		this.c++;
+	}
 
-			try {
-				Thread.sleep(500);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-			this.c++;
-		}
+	private RdfQuadruple follower() {
+		final RdfQuadruple q1 = new RdfQuadruple(super.getIRI()+"/user" + this.c+follower,
+				"http://myexample.org/likes", "http://myexample.org/O" + this.c, System.currentTimeMillis());
+		//         logger.info(q1.toString());
+		ct++;
+		follower++;
+		return q1;
 	}
 
 	public static String dumpRelatedStaticKnowledge(int maxUser) {
@@ -0,0 +1,186 @@
+package eu.larkc.csparql.runtime;
+
+import eu.larkc.csparql.common.RDFTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+
+/**
+ * Observer of query results that hands them to a slow consumer (console printing, HTTP
+ * callback...) on a thread of its own, so that the engine's evaluation thread only queues the
+ * result and goes on with the next window:
+ * {@code proxy.addObserver(new AsyncObserver(new ConsoleFormatter(), "cleantv console"))}.
+ *
+ * Each AsyncObserver has its own bounded {@link HandOffQueue} of {@link #getCapacity()}
+ * results. When the consumer falls behind and the queue is full, the {@link OverflowPolicy}
+ * decides, as for a {@link BufferedRdfStream}: drop the oldest results (the default), keep a sample, or block,
+ * which makes the engine wait again and is only meant for consumers that must see
+ * everything. The consumer is handed every result queued since its last call at once: one
+ * {@link BatchObserver#update(Observable, List)} per run of results from the same source, or
+ * one {@link Observer#update(Observable, Object)} per result for a plain observer. The lag of
+ * the consumer, the time results spend in the queue, is logged periodically, with the size of
+ * the last result rather than the result itself.
+ */
+public class AsyncObserver implements Observer {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private static Logger logger = LoggerFactory.getLogger(AsyncObserver.class);
+
+    /** Consumer of several results at once, e.g. to write them with a single request. */
+    public interface BatchObserver extends Observer {
+
+        /** Consecutive results of {@code source}, oldest first. */
+        void update(Observable source, List<Object> results);
+    }
+
+    private final Observer consumer;
+    private final String name;
+    private final ProgressLogger progress;
+    private final HandOffQueue<Result> queue;
+
+    /**
+     * @param consumer the observer the results are handed to
+     * @param name     name of the consumer in the logs
+     */
+    public AsyncObserver(Observer consumer, String name) {
+        this.consumer = consumer;
+        this.name = name;
+        this.progress = new ProgressLogger(logger, name);
+        this.queue = new HandOffQueue<Result>("Observer " + name, name + "-observer", null, Integer.MAX_VALUE,
+                DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST) {
+            @Override
+            protected void handOff(List<Result> batch) {
+                deliver(batch);
+            }
+        };
+    }
+
+    /** Maximum number of results waiting for the consumer. */
+    public void setCapacity(int capacity) {
+        queue.setCapacity(capacity);
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        queue.setOverflowPolicy(overflowPolicy);
+    }
+
+    /** With {@link OverflowPolicy#SAMPLE}, one result in {@code sampleEvery} is kept. */
+    public void setSampleEvery(int sampleEvery) {
+        queue.setSampleEvery(sampleEvery);
+    }
+
+    /** Queues the result for the consumer; called on the engine's thread. */
+    public void update(Observable source, Object result) {
+        queue.offer(new Result(source, result, System.currentTimeMillis()));
+    }
+
+    /**
+     * Waits, at most {@code timeoutMillis} ms, until the queued results have been handed to
+     * the consumer, then stops. What is left after the timeout is discarded.
+     *
+     * @return true if everything was delivered
+     */
+    public boolean drain(long timeoutMillis) throws InterruptedException {
+        return queue.drain(timeoutMillis);
+    }
+
+    /** Stops and discards the results the consumer has not received yet. */
+    public void close() {
+        queue.close();
+    }
+
+    public int getCapacity() {
+        return queue.getCapacity();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return queue.getOverflowPolicy();
+    }
+
+    /** Results waiting for the consumer. */
+    public int getQueueDepth() {
+        return queue.getDepth();
+    }
+
+    /** Highest {@link #getQueueDepth()} seen so far. */
+    public int getHighWaterMark() {
+        return queue.getHighWaterMark();
+    }
+
+    /** Results handed to the consumer. */
+    public long getDeliveredCount() {
+        return queue.getDeliveredCount();
+    }
+
+    /** Results discarded by the overflow policy or because the observer was closed. */
+    public long getDroppedCount() {
+        return queue.getDroppedCount();
+    }
+
+    /** Milliseconds the oldest queued result has been waiting, 0 when the queue is empty. */
+    public long getLagMillis() {
+        Result oldest = queue.peek();
+        return oldest != null ? Math.max(0L, System.currentTimeMillis() - oldest.queuedAt) : 0L;
+    }
+
+    private void deliver(List<Result> batch) {
+        long now = System.currentTimeMillis();
+        for (Result result : batch) {
+            progress.record(now - result.queuedAt, result);
+        }
+
+        if (!(consumer instanceof BatchObserver)) {
+            for (Result result : batch) {
+                try {
+                    consumer.update(result.source, result.result);
+                } catch (RuntimeException e) {
+                    logger.error("Observer " + name + " failed", e);
+                }
+            }
+            return;
+        }
+        int start = 0;
+        for (int i = 1; i <= batch.size(); i++) {
+            if (i == batch.size() || batch.get(i).source != batch.get(start).source) {
+                List<Object> results = new ArrayList<Object>(i - start);
+                for (Result result : batch.subList(start, i)) {
+                    results.add(result.result);
+                }
+                try {
+                    ((BatchObserver) consumer).update(batch.get(start).source, results);
+                } catch (RuntimeException e) {
+                    logger.error("Observer " + name + " failed", e);
+                }
+                start = i;
+            }
+        }
+    }
+
+    /** One result waiting for the consumer. */
+    private static final class Result {
+
+        final Observable source;
+        final Object result;
+        final long queuedAt;
+
+        Result(Observable source, Object result, long queuedAt) {
+            this.source = source;
+            this.result = result;
+            this.queuedAt = queuedAt;
+        }
+
+        /** Short description for the progress log: the whole result can be a large table. */
+        @Override
+        public String toString() {
+            if (result instanceof RDFTable) {
+                return "table of " + ((RDFTable) result).size() + " tuples";
+            }
+            return result == null ? "null" : result.getClass().getSimpleName();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package eu.larkc.csparql.runtime;
+
+import eu.larkc.csparql.cep.api.RdfQuadruple;
+import eu.larkc.csparql.cep.api.RdfStream;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stream whose producers are decoupled from the engine by a bounded queue.
+ *
+ * {@link #put(RdfQuadruple)} (and {@link #offer(RdfQuadruple[])} for several quads that must
+ * stay together) only queues the data; a delivery thread hands it to the engine. For a
+ * {@link PeriodicProducer} that is the shared delivery pool of the {@link StreamerRuntime},
+ * other streams have a delivery thread of their own. When the
+ * engine falls behind and the queue reaches {@link #getCapacity()} quads, the
+ * {@link OverflowPolicy} decides: block the producer, drop the oldest batches or keep a
+ * sample. Memory stays bounded and overload shows up in {@link #getDroppedCount()} and
+ * {@link #getQueueDepth()} instead of an OutOfMemoryError. The queue is a {@link HandOffQueue},
+ * as for {@link AsyncObserver}.
+ * The default policy is BLOCK, except for {@link PeriodicProducer}s: their ticks run on the
+ * few threads of the shared {@link StreamerRuntime}, which a blocked producer would take from
+ * all the others, so they drop the oldest batches. A runtime thread never waits for a BLOCK
+ * queue anyway: a PeriodicProducer set to BLOCK is not ticked while its queue is full, and a
+ * batch offered on a runtime thread that does not fit is dropped, with the tick counted as
+ * skipped ({@link #getSkippedTicks()}).
+ *
+ * The stream also gives the streamers a lifecycle: {@link #start()} runs the producer
+ * ({@link PeriodicProducer}s on the shared {@link StreamerRuntime}, other {@link Runnable}s
+ * on their own thread), {@link #stop()} ends it at once and {@link #drain(long)} ends it
+ * after the queued data has reached the engine.
+ */
+public abstract class BufferedRdfStream extends RdfStream {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final int DEFAULT_SAMPLE_EVERY = 10;
+
+    private final HandOffQueue<RdfQuadruple[]> queue;
+    private final AtomicLong skippedTicks = new AtomicLong();
+    private final AtomicLong refusedBatches = new AtomicLong();
+
+    private volatile boolean started;
+    private volatile boolean stopped;
+    private StreamerRuntime.Registration registration;
+    private Thread producerThread;
+
+    public BufferedRdfStream(String iri) {
+        super(iri);
+        boolean periodic = this instanceof PeriodicProducer;
+        OverflowPolicy policy = periodic ? OverflowPolicy.DROP_OLDEST : OverflowPolicy.BLOCK;
+        Executor executor = periodic ? StreamerRuntime.getShared().getDeliveryExecutor() : null;
+        queue = new HandOffQueue<RdfQuadruple[]>("Stream " + iri, iri + "-delivery", executor, 1, DEFAULT_CAPACITY, policy) {
+            @Override
+            protected int sizeOf(RdfQuadruple[] batch) {
+                return batch.length;
+            }
+
+            @Override
+            protected void handOff(List<RdfQuadruple[]> batches) {
+                for (RdfQuadruple[] batch : batches) {
+                    for (RdfQuadruple q : batch) {
+                        BufferedRdfStream.super.put(q);
+                    }
+                }
+            }
+        };
+    }
+
+    /** Maximum number of quads waiting for the engine. */
+    public void setCapacity(int capacity) {
+        queue.setCapacity(capacity);
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        queue.setOverflowPolicy(overflowPolicy);
+    }
+
+    /** With {@link OverflowPolicy#SAMPLE}, one batch in {@code sampleEvery} is kept. */
+    public void setSampleEvery(int sampleEvery) {
+        queue.setSampleEvery(sampleEvery);
+    }
+
+    @Override
+    public void put(RdfQuadruple q) {
+        offer(new RdfQuadruple[] {q});
+    }
+
+    /**
+     * Queues {@code batch} for the engine. The quads of a batch are delivered together and
+     * are dropped together.
+     */
+    public void offer(RdfQuadruple[] batch) {
+        if (!StreamerRuntime.isRuntimeThread()) {
+            queue.offer(batch);
+        } else if (!queue.tryOffer(batch)) {
+            refusedBatches.incrementAndGet();
+        }
+    }
+
+    /**
+     * Starts producing.
+     *
+     * @throws IllegalStateException if the stream was already started
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("Stream " + getIRI() + " already started");
+        }
+        started = true;
+        if (this instanceof PeriodicProducer) {
+            registration = StreamerRuntime.getShared().register(new GuardedProducer((PeriodicProducer) this));
+        } else if (this instanceof Runnable) {
+            producerThread = new Thread((Runnable) this, getIRI());
+            producerThread.start();
+        }
+    }
+
+    /** Stops producing and discards the data the engine has not received yet. */
+    public void stop() {
+        stopProducing();
+        queue.close();
+    }
+
+    /**
+     * Stops producing and waits, at most {@code timeoutMillis} ms, until the queued data has
+     * been handed to the engine. What is left after the timeout is discarded.
+     *
+     * @return true if everything was delivered
+     */
+    public boolean drain(long timeoutMillis) throws InterruptedException {
+        stopProducing();
+        return queue.drain(timeoutMillis);
+    }
+
+    /** True once {@link #stop()} or {@link #drain(long)} was called: producer loops must end. */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    public int getCapacity() {
+        return queue.getCapacity();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return queue.getOverflowPolicy();
+    }
+
+    public int getSampleEvery() {
+        return queue.getSampleEvery();
+    }
+
+    /** Quads waiting for the engine. */
+    public int getQueueDepth() {
+        return queue.getDepth();
+    }
+
+    /** Highest {@link #getQueueDepth()} seen so far. */
+    public int getHighWaterMark() {
+        return queue.getHighWaterMark();
+    }
+
+    /** Quads handed to the engine. */
+    public long getDeliveredCount() {
+        return queue.getDeliveredCount();
+    }
+
+    /**
+     * Ticks of a blocking PeriodicProducer skipped, entirely or in part, because its queue
+     * was full.
+     */
+    public long getSkippedTicks() {
+        return skippedTicks.get();
+    }
+
+    /** Quads discarded by the overflow policy or because the stream was stopped. */
+    public long getDroppedCount() {
+        return queue.getDroppedCount();
+    }
+
+    private synchronized void stopProducing() {
+        stopped = true;
+        if (registration != null) {
+            registration.cancel();
+        }
+        if (producerThread != null && producerThread != Thread.currentThread()) {
+            producerThread.interrupt();
+        }
+    }
+
+    /**
+     * Ticks the producer unless its queue is full with {@link OverflowPolicy#BLOCK}, and counts
+     * the ticks that had a batch refused because it did not fit.
+     */
+    private final class GuardedProducer implements PeriodicProducer {
+
+        private final PeriodicProducer producer;
+
+        GuardedProducer(PeriodicProducer producer) {
+            this.producer = producer;
+        }
+
+        public long getPeriod() {
+            return producer.getPeriod();
+        }
+
+        public void tick() throws Exception {
+            if (queue.wouldBlock()) {
+                skippedTicks.incrementAndGet();
+                return;
+            }
+            long refused = refusedBatches.get();
+            try {
+                producer.tick();
+            } finally {
+                if (refusedBatches.get() != refused) {
+                    skippedTicks.incrementAndGet();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return producer.toString();
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package eu.larkc.csparql.runtime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue between producers and their consumer, shared by {@link BufferedRdfStream}
+ * (batches of quads for the engine) and {@link AsyncObserver} (query results for a slow
+ * consumer).
+ *
+ * {@link #offer(Object)} queues an element and returns. The deliveries take up to
+ * {@code maxHandOff} elements at once and pass them to {@link #handOff(List)}, either on a
+ * delivery thread of the queue, started by the first offer, or on a shared executor: then the
+ * queue holds no thread, a delivery task is submitted when elements are queued and, after a
+ * few hand-offs, submits itself again to let the other queues of the executor run. Deliveries
+ * of one queue never overlap, so the elements are handed off in order. Capacity and counters are in units of {@link #sizeOf(Object)}, e.g.
+ * quads for a batch of quads. When an element does not fit, the {@link OverflowPolicy}
+ * decides: block the producer, drop the oldest elements or keep a sample.
+ */
+abstract class HandOffQueue<E> {
+
+    /** Hand-offs of a delivery task on a shared executor before it yields to the other queues. */
+    private static final int HAND_OFFS_PER_TASK = 16;
+
+    private static Logger logger = LoggerFactory.getLogger(HandOffQueue.class);
+
+    private final String name;
+    private final String threadName;
+    private final Executor executor;
+    private final int maxHandOff;
+    private final Runnable deliveryTask = new Runnable() {
+        public void run() {
+            deliverScheduled();
+        }
+    };
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private final ArrayDeque<E> queue = new ArrayDeque<E>();
+
+    // guarded by lock
+    private int capacity;
+    private OverflowPolicy overflowPolicy;
+    private int sampleEvery = BufferedRdfStream.DEFAULT_SAMPLE_EVERY;
+    private int depth;
+    private int highWaterMark;
+    private long delivered;
+    private long dropped;
+    private long overflows;
+    private boolean delivering;
+    private boolean overloaded;
+    private boolean closed;
+    private boolean scheduled;
+    private Thread deliveryThread;
+
+    /**
+     * @param name       name of the queue in the logs, e.g. "Stream http://..."
+     * @param threadName name of the delivery thread
+     * @param executor   executor the deliveries run on, null for a delivery thread of its own
+     * @param maxHandOff most elements passed to one {@link #handOff(List)}
+     */
+    HandOffQueue(String name, String threadName, Executor executor, int maxHandOff, int capacity,
+                 OverflowPolicy overflowPolicy) {
+        this.name = name;
+        this.threadName = threadName;
+        this.executor = executor;
+        this.maxHandOff = maxHandOff;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /** Size of {@code element} in the capacity and the counters: 1 unless overridden. */
+    protected int sizeOf(E element) {
+        return 1;
+    }
+
+    /** Passes {@code elements}, oldest first, to the consumer; calls never overlap. */
+    protected abstract void handOff(List<E> elements);
+
+    void setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        lock.lock();
+        try {
+            this.capacity = capacity;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        lock.lock();
+        try {
+            this.overflowPolicy = overflowPolicy;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setSampleEvery(int sampleEvery) {
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("sampleEvery must be positive: " + sampleEvery);
+        }
+        lock.lock();
+        try {
+            this.sampleEvery = sampleEvery;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues {@code element} for the delivery thread, applying the overflow policy when the
+     * queue is full. An element larger than the capacity is still queued when the queue is
+     * empty.
+     */
+    void offer(E element) {
+        offer(element, true);
+    }
+
+    /**
+     * Same as {@link #offer(Object)}, except that with {@link OverflowPolicy#BLOCK} an element
+     * that does not fit is dropped instead of waiting for room.
+     *
+     * @return false if the element was dropped because it would have blocked
+     */
+    boolean tryOffer(E element) {
+        return offer(element, false);
+    }
+
+    private boolean offer(E element, boolean wait) {
+        int size = sizeOf(element);
+        lock.lock();
+        try {
+            if (closed) {
+                dropped += size;
+                return true;
+            }
+            if (executor == null && deliveryThread == null) {
+                startDelivery();
+            }
+            if (depth > 0 && depth + size > capacity) {
+                overflows++;
+                if (!overloaded) {
+                    overloaded = true;
+                    logger.warn("{} is overloaded ({} queued), applying {} policy", name, depth, overflowPolicy);
+                }
+                if (overflowPolicy == OverflowPolicy.SAMPLE && overflows % sampleEvery != 0) {
+                    dropped += size;
+                    return true;
+                }
+            }
+            while (depth > 0 && depth + size > capacity) {
+                if (overflowPolicy == OverflowPolicy.BLOCK) {
+                    if (!wait) {
+                        dropped += size;
+                        return false;
+                    }
+                    notFull.await();
+                    if (closed) {
+                        dropped += size;
+                        return true;
+                    }
+                } else {
+                    int oldest = sizeOf(queue.poll());
+                    depth -= oldest;
+                    dropped += oldest;
+                }
+            }
+            queue.add(element);
+            depth += size;
+            if (depth > highWaterMark) {
+                highWaterMark = depth;
+            }
+            if (executor == null) {
+                notEmpty.signal();
+            } else if (!scheduled) {
+                scheduled = true;
+                executor.execute(deliveryTask);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            dropped += size;
+            Thread.currentThread().interrupt();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits, at most {@code timeoutMillis} ms, until the queued elements have been handed off,
+     * then closes the queue. What is left after the timeout is discarded.
+     *
+     * @return true if everything was delivered
+     */
+    boolean drain(long timeoutMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while ((depth > 0 || delivering) && remaining > 0) {
+                remaining = idle.awaitNanos(remaining);
+            }
+            return depth == 0 && !delivering;
+        } finally {
+            lock.unlock();
+            close();
+        }
+    }
+
+    /** Discards the queued elements; later offers are dropped. */
+    void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            dropped += depth;
+            queue.clear();
+            depth = 0;
+            notEmpty.signalAll();
+            notFull.signalAll();
+            idle.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** True when any offer would block: the policy is BLOCK and the queue is full. */
+    boolean wouldBlock() {
+        lock.lock();
+        try {
+            return overflowPolicy == OverflowPolicy.BLOCK && depth >= capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Oldest queued element, null when the queue is empty. */
+    E peek() {
+        lock.lock();
+        try {
+            return queue.peek();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getCapacity() {
+        lock.lock();
+        try {
+            return capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    OverflowPolicy getOverflowPolicy() {
+        lock.lock();
+        try {
+            return overflowPolicy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getSampleEvery() {
+        lock.lock();
+        try {
+            return sampleEvery;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getDepth() {
+        lock.lock();
+        try {
+            return depth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getHighWaterMark() {
+        lock.lock();
+        try {
+            return highWaterMark;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getDeliveredCount() {
+        lock.lock();
+        try {
+            return delivered;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getDroppedCount() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void startDelivery() {
+        deliveryThread = new Thread(new Runnable() {
+            public void run() {
+                deliver();
+            }
+        }, threadName);
+        deliveryThread.setDaemon(true);
+        deliveryThread.start();
+    }
+
+    private void deliver() {
+        List<E> batch = new ArrayList<E>();
+        while (true) {
+            int size;
+            lock.lock();
+            try {
+                while (queue.isEmpty()) {
+                    if (closed) {
+                        return;
+                    }
+                    notEmpty.awaitUninterruptibly();
+                }
+                size = take(batch);
+            } finally {
+                lock.unlock();
+            }
+            deliverBatch(batch, size);
+        }
+    }
+
+    private void deliverScheduled() {
+        List<E> batch = new ArrayList<E>();
+        for (int round = 0; round < HAND_OFFS_PER_TASK; round++) {
+            int size;
+            lock.lock();
+            try {
+                if (queue.isEmpty()) {
+                    scheduled = false;
+                    return;
+                }
+                size = take(batch);
+            } finally {
+                lock.unlock();
+            }
+            deliverBatch(batch, size);
+        }
+        executor.execute(deliveryTask);
+    }
+
+    /** Moves the next elements to {@code batch}; called with the lock held. */
+    private int take(List<E> batch) {
+        int size = 0;
+        while (!queue.isEmpty() && batch.size() < maxHandOff) {
+            E element = queue.poll();
+            size += sizeOf(element);
+            batch.add(element);
+        }
+        depth -= size;
+        delivering = true;
+        notFull.signalAll();
+        return size;
+    }
+
+    private void deliverBatch(List<E> batch, int size) {
+        try {
+            handOff(batch);
+        } catch (RuntimeException e) {
+            logger.error("Delivery failed on " + name, e);
+        }
+
+        lock.lock();
+        try {
+            delivered += size;
+            delivering = false;
+            if (queue.isEmpty()) {
+                overloaded = false;
+                idle.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        batch.clear();
+    }
+}
@@ -0,0 +1,33 @@
+package eu.larkc.csparql.runtime;
+
+import eu.larkc.csparql.cep.api.RdfQuadruple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Observable;
+import java.util.Observer;
+
+/**
+ * Logs the end-to-end latency of a stream: for each quad it observes, the time elapsed since
+ * the quad's own timestamp. Added as an observer of the last stream of a chain of in-Java
+ * operators, whose quads keep the timestamp of the data they were computed from, it measures
+ * the whole chain, e.g.
+ * {@code partitioned.addObserver(new LatencyProbe("sensors -> partitioned"))}.
+ */
+public class LatencyProbe implements Observer {
+
+    private static Logger logger = LoggerFactory.getLogger(LatencyProbe.class);
+
+    private final ProgressLogger progress;
+
+    public LatencyProbe(String name) {
+        this.progress = new ProgressLogger(logger, name);
+    }
+
+    public void update(Observable stream, Object data) {
+        if (data instanceof RdfQuadruple) {
+            RdfQuadruple q = (RdfQuadruple) data;
+            progress.record(System.currentTimeMillis() - q.getTimestamp(), q);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package eu.larkc.csparql.runtime;
+
+/**
+ * What a {@link BufferedRdfStream} does with new data when its hand-off queue is full.
+ */
+public enum OverflowPolicy {
+
+    /** The producer waits until the engine has caught up. Nothing is lost. */
+    BLOCK,
+
+    /** The oldest queued batches are discarded: the engine sees the most recent data. */
+    DROP_OLDEST,
+
+    /**
+     * Only one new batch out of {@link BufferedRdfStream#getSampleEvery()} is kept (replacing
+     * the oldest queued one), the others are discarded: the engine sees a thinned but
+     * evenly spread sample of the overload.
+     */
+    SAMPLE
+}
@@ -0,0 +1,14 @@
+package eu.larkc.csparql.runtime;
+
+/**
+ * A streamer that produces data at a regular pace, driven by a {@link StreamerRuntime}
+ * instead of its own {@code while (true) { ...; Thread.sleep(sleepTime); }} thread.
+ */
+public interface PeriodicProducer {
+
+    /** Delay between the end of a tick and the start of the next one, in ms. */
+    long getPeriod();
+
+    /** Produces one round of data. Must not sleep: the runtime does the waiting. */
+    void tick() throws Exception;
+}
@@ -0,0 +1,68 @@
+package eu.larkc.csparql.runtime;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregated progress of a stream, logged once per interval instead of one line per event:
+ * {@code stream#numeric: 1532 events/s, lag avg 3 ms max 41 ms, last: <reading>}.
+ *
+ * {@link #record(long, Object)} only bumps counters; the line (with the current event as a
+ * sample) is written by the first event of a new interval. Safe for concurrent producers.
+ */
+public class ProgressLogger {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+    private final Logger logger;
+    private final String name;
+    private final long intervalNanos;
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder lagSum = new LongAdder();
+    private final AtomicLong maxLag = new AtomicLong();
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+    public ProgressLogger(Logger logger, String name) {
+        this(logger, name, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    public ProgressLogger(Logger logger, String name, long intervalMillis) {
+        this.logger = logger;
+        this.name = name;
+        this.intervalNanos = intervalMillis * 1000000L;
+    }
+
+    /**
+     * Counts one event sent {@code lagMillis} ms after it was due.
+     *
+     * @param sample the event, only turned into a string when a line is logged
+     */
+    public void record(long lagMillis, Object sample) {
+        events.increment();
+        if (lagMillis > 0) {
+            lagSum.add(lagMillis);
+            if (lagMillis > maxLag.get()) {
+                maxLag.accumulateAndGet(lagMillis, Math::max);
+            }
+        }
+
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        if (now - start >= intervalNanos && windowStart.compareAndSet(start, now)) {
+            flush(now - start, sample);
+        }
+    }
+
+    private void flush(long elapsedNanos, Object sample) {
+        long count = events.sumThenReset();
+        long lag = lagSum.sumThenReset();
+        long max = maxLag.getAndSet(0);
+        if (logger.isInfoEnabled()) {
+            logger.info("{}: {} events/s, lag avg {} ms max {} ms, last: {}", name,
+                    Math.round(count * 1e9 / elapsedNanos), count > 0 ? lag / count : 0, max, sample);
+        }
+    }
+}
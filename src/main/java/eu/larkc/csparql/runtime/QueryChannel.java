@@ -0,0 +1,134 @@
+package eu.larkc.csparql.runtime;
+
+import eu.larkc.csparql.cep.api.RdfQuadruple;
+import eu.larkc.csparql.cep.api.RdfStream;
+import eu.larkc.csparql.common.RDFTable;
+import eu.larkc.csparql.common.RDFTuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Observable;
+import java.util.Observer;
+
+/**
+ * Turns the output of one query, or of an in-Java operator, into a stream that the queries
+ * downstream read: register the channel in the engine and add it as an observer of the
+ * upstream query's result proxy, or of the operator's stream.
+ *
+ * Replaces RDFStreamFormatter, which re-put every result triple one by one on the
+ * observer's thread. Here each CONSTRUCT result (an {@link RDFTable} of subject, predicate,
+ * object tuples) is queued as one batch, so it reaches the downstream windows together, and
+ * the upstream engine thread does not wait on the downstream one.
+ *
+ * The quads of in-Java operators are forwarded unchanged, with their timestamps. The engine's
+ * results carry no timestamp: when the channel {@link #watch(RdfStream, long) watches} the
+ * stream the upstream query reads, a result is stamped with the earliest timestamp of the
+ * quads that arrived on it within the query's range, i.e. of the window it was computed from,
+ * and the latency of the hop (from that timestamp to the result) is logged by the channel.
+ * Otherwise the result is stamped when it reaches the channel, as RDFStreamFormatter did.
+ */
+public class QueryChannel extends BufferedRdfStream implements Observer {
+
+    private static Logger logger = LoggerFactory.getLogger(QueryChannel.class);
+
+    /** Number of arrival buckets per range: a window is known to within a tenth of its range. */
+    private static final int BUCKETS = 10;
+
+    private final ProgressLogger latency;
+
+    /** earliest quad timestamp of each arrival bucket, oldest first: bucket, timestamp... */
+    private final ArrayDeque<long[]> arrivals = new ArrayDeque<long[]>();
+    private long range;
+    private long bucketMillis;
+
+    public QueryChannel(String iri) {
+        super(iri);
+        this.latency = new ProgressLogger(logger, iri);
+    }
+
+    /**
+     * Stamps the results with the timestamps of {@code input}, the stream the upstream query
+     * reads with a window of {@code rangeMillis}.
+     */
+    public void watch(RdfStream input, long rangeMillis) {
+        if (rangeMillis <= 0) {
+            throw new IllegalArgumentException("Window range must be positive: " + rangeMillis);
+        }
+        synchronized (arrivals) {
+            range = rangeMillis;
+            bucketMillis = Math.max(1L, rangeMillis / BUCKETS);
+        }
+        input.addObserver(new Observer() {
+            public void update(Observable o, Object data) {
+                if (data instanceof RdfQuadruple) {
+                    arrived(((RdfQuadruple) data).getTimestamp(), System.currentTimeMillis());
+                }
+            }
+        });
+    }
+
+    public void update(Observable upstream, Object data) {
+        if (data instanceof RdfQuadruple) {
+            put((RdfQuadruple) data);
+        } else if (data instanceof RDFTable) {
+            long now = System.currentTimeMillis();
+            long origin = windowOrigin(now);
+            RdfQuadruple[] batch = toQuads((RDFTable) data, origin != Long.MAX_VALUE ? origin : now);
+            if (batch.length > 0) {
+                if (origin != Long.MAX_VALUE) {
+                    latency.record(now - origin, batch[0]);
+                }
+                offer(batch);
+            }
+        }
+    }
+
+    private void arrived(long timestamp, long now) {
+        synchronized (arrivals) {
+            long bucket = now / bucketMillis;
+            long[] last = arrivals.peekLast();
+            if (last != null && last[0] == bucket) {
+                last[1] = Math.min(last[1], timestamp);
+            } else {
+                arrivals.addLast(new long[]{bucket, timestamp});
+            }
+            evict(now);
+        }
+    }
+
+    /** Earliest timestamp of the quads arrived within the range, Long.MAX_VALUE if none. */
+    private long windowOrigin(long now) {
+        synchronized (arrivals) {
+            evict(now);
+            long origin = Long.MAX_VALUE;
+            for (long[] arrival : arrivals) {
+                origin = Math.min(origin, arrival[1]);
+            }
+            return origin;
+        }
+    }
+
+    private void evict(long now) {
+        if (range == 0) {
+            return;
+        }
+        long oldest = (now - range) / bucketMillis;
+        while (!arrivals.isEmpty() && arrivals.peekFirst()[0] < oldest) {
+            arrivals.removeFirst();
+        }
+    }
+
+    private static RdfQuadruple[] toQuads(RDFTable table, long timestamp) {
+        RdfQuadruple[] batch = new RdfQuadruple[table.size()];
+        int n = 0;
+        for (RDFTuple tuple : table) {
+            if (n == batch.length) {
+                batch = Arrays.copyOf(batch, 2 * n + 1);
+            }
+            batch[n++] = new RdfQuadruple(tuple.get(0), tuple.get(1), tuple.get(2), timestamp);
+        }
+        return n == batch.length ? batch : Arrays.copyOf(batch, n);
+    }
+}
@@ -0,0 +1,63 @@
+package eu.larkc.csparql.runtime;
+
+import eu.larkc.csparql.core.engine.CsparqlEngineImpl;
+
+/**
+ * K engine instances, each owning a disjoint set of homes ({@link #shardOf(String, int)}),
+ * so that the window evaluations of different homes run on different cores instead of
+ * being serialized by a single engine.
+ *
+ * Every shard gets its own copy of the streams, fed by a router that dispatches each
+ * observation to the streams of its home's shard (see HomeLogRouter), and the same queries,
+ * whose results are all handed to the same observers, which must accept concurrent updates.
+ * Each stream has its own delivery thread, so the router only queues and the shards are fed
+ * in parallel. A shard only sees its own homes: queries that aggregate over several homes
+ * are not supported.
+ */
+public class ShardedEngine {
+
+    private final CsparqlEngineImpl[] engines;
+
+    /**
+     * Creates and initializes {@code shards} engines.
+     */
+    public ShardedEngine(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("At least one shard is needed: " + shards);
+        }
+        engines = new CsparqlEngineImpl[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            engines[shard] = new CsparqlEngineImpl();
+            engines[shard].initialize();
+        }
+    }
+
+    /**
+     * Shard of the readings of {@code home}; a reading without home (a single home log) goes
+     * to the first shard.
+     */
+    public static int shardOf(String home, int shards) {
+        if (home == null || shards == 1) {
+            return 0;
+        }
+        return Math.floorMod(home.hashCode(), shards);
+    }
+
+    public int shardOf(String home) {
+        return shardOf(home, engines.length);
+    }
+
+    public int getShardCount() {
+        return engines.length;
+    }
+
+    public CsparqlEngineImpl getEngine(int shard) {
+        return engines[shard];
+    }
+
+    public void destroy() {
+        for (CsparqlEngineImpl engine : engines) {
+            engine.destroy();
+        }
+    }
+}
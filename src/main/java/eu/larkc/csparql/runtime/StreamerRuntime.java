@@ -0,0 +1,181 @@
+package eu.larkc.csparql.runtime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the {@link PeriodicProducer}s of the application on a handful of threads.
+ *
+ * A scheduled pool of {@code timerThreads} threads waits between the ticks and, by default,
+ * also runs them. Optionally the ticks are run on virtual threads (when the JVM provides
+ * them, Java 21+) and the pool only keeps time: producers whose tick blocks on I/O then do
+ * not hold a platform thread. The queued data of the producers that are streams is handed to
+ * the engine by a shared pool of as many delivery threads ({@link #getDeliveryExecutor()}).
+ * Thousands of simulated sensors cost the pool sizes in threads, not one or two threads each. The threads are daemon threads: once the streams are stopped, the
+ * runtime does not keep the JVM running.
+ */
+public class StreamerRuntime {
+
+    private static Logger logger = LoggerFactory.getLogger(StreamerRuntime.class);
+
+    /** Set on the threads of the timer and delivery pools. */
+    private static final ThreadLocal<Boolean> RUNTIME_THREAD = new ThreadLocal<Boolean>();
+
+    private static StreamerRuntime shared;
+
+    private final ScheduledExecutorService timer;
+    private final ExecutorService workers;
+    private final ExecutorService delivery;
+
+    public StreamerRuntime(int timerThreads) {
+        this(timerThreads, false);
+    }
+
+    public StreamerRuntime(int timerThreads, boolean virtualThreads) {
+        this.timer = Executors.newScheduledThreadPool(timerThreads, new NamedThreadFactory("streamer-runtime"));
+        this.workers = virtualThreads ? newVirtualThreadExecutor() : null;
+        this.delivery = Executors.newFixedThreadPool(timerThreads, new NamedThreadFactory("streamer-delivery"));
+    }
+
+    /** Runtime shared by the streamers, sized on the number of cores. */
+    public static synchronized StreamerRuntime getShared() {
+        if (shared == null) {
+            shared = new StreamerRuntime(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+        }
+        return shared;
+    }
+
+    /**
+     * True on a thread of the timer or delivery pool of a runtime, which must never wait for
+     * room in a full queue: the threads are shared by all the producers.
+     */
+    public static boolean isRuntimeThread() {
+        return RUNTIME_THREAD.get() != null;
+    }
+
+    /**
+     * Starts ticking {@code producer}: first tick now, then one every
+     * {@link PeriodicProducer#getPeriod()} ms after the previous one ended.
+     */
+    public Registration register(PeriodicProducer producer) {
+        Registration registration = new Registration(producer);
+        registration.schedule(0);
+        return registration;
+    }
+
+    /**
+     * Executor of the deliveries of the streams ticked by this runtime: a
+     * {@link BufferedRdfStream} that is a {@link PeriodicProducer} hands its batches to the
+     * engine on it instead of on a thread of its own.
+     */
+    public Executor getDeliveryExecutor() {
+        return delivery;
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+        delivery.shutdownNow();
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Virtual threads are not available on this JVM, ticks run on the timer threads");
+            return null;
+        }
+    }
+
+    /** Handle of a registered producer. */
+    public final class Registration {
+
+        private final PeriodicProducer producer;
+        private volatile boolean cancelled;
+        private volatile ScheduledFuture<?> next;
+
+        private Registration(PeriodicProducer producer) {
+            this.producer = producer;
+        }
+
+        private void schedule(long delay) {
+            if (!cancelled && !timer.isShutdown()) {
+                next = timer.schedule(new Runnable() {
+                    public void run() {
+                        if (workers != null) {
+                            workers.execute(new Runnable() {
+                                public void run() {
+                                    tick();
+                                }
+                            });
+                        } else {
+                            tick();
+                        }
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void tick() {
+            if (cancelled) {
+                return;
+            }
+            try {
+                producer.tick();
+            } catch (Exception e) {
+                logger.error("Tick of " + producer + " failed", e);
+            }
+            schedule(producer.getPeriod());
+        }
+
+        public PeriodicProducer getProducer() {
+            return producer;
+        }
+
+        /** Stops ticking; a tick in progress is not interrupted. */
+        public void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> pending = next;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    RUNTIME_THREAD.set(Boolean.TRUE);
+                    r.run();
+                }
+            }, prefix + "-" + count.incrementAndGet());
+            // the shared runtime is never shut down: it must not keep the JVM alive
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
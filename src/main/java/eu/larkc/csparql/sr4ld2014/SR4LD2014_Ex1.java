@@ -64,8 +64,6 @@ public class SR4LD2014_Ex1 {
 			//Register new stream in the engine
 			engine.registerStream(fs);
 
-			Thread fsThread = new Thread(fs);
-
 			//Register new query in the engine
 			CsparqlQueryResultProxy c = engine.registerQuery(queryBody, false);
 
@@ -73,7 +71,7 @@ public class SR4LD2014_Ex1 {
 			c.addObserver(new ConsoleFormatter());
 
 			//Start the thread that put the triples in the engine
-			fsThread.start();
+			fs.start();
 
 		}catch (Exception e) {
 			logger.error(e.getMessage(), e);
@@ -65,8 +65,6 @@ public class SR4LD2014_Ex2 {
 			//Register new stream in the engine
 			engine.registerStream(fb);
 
-			Thread fbThread = new Thread(fb);
-
 			//Register new query in the engine
 			CsparqlQueryResultProxy c = engine.registerQuery(queryBody, false);
 
@@ -74,7 +72,7 @@ public class SR4LD2014_Ex2 {
 			c.addObserver(new ConsoleFormatter());
 
 			//Start the thread that put the triples in the engine
-			fbThread.start();
+			fb.start();
 
 		}catch (Exception e) {
 			logger.error(e.getMessage(), e);
@@ -28,7 +28,7 @@ import org.slf4j.LoggerFactory;
 import eu.larkc.csparql.core.engine.ConsoleFormatter;
 import eu.larkc.csparql.core.engine.CsparqlEngineImpl;
 import eu.larkc.csparql.core.engine.CsparqlQueryResultProxy;
-import eu.larkc.csparql.core.engine.RDFStreamFormatter;
+import eu.larkc.csparql.runtime.QueryChannel;
 import eu.larkc.csparql.sr4ld2014.streamer.FacebookStreamer;
 import eu.larkc.csparql.sr4ld2014.streamer.FoursquareStreamer;
 
@@ -88,16 +88,16 @@ public class SR4LD2014_Ex3 {
 			engine.registerStream(fs);
 			engine.registerStream(fb);
 
-			Thread fsThread = new Thread(fs);
-			Thread fbThread = new Thread(fb);
-
 			//Register the simple query on facebook and foursquare stream
 			CsparqlQueryResultProxy isInFsProxy = engine.registerQuery(isInFsBody, false);
 			CsparqlQueryResultProxy isWithFbProxy = engine.registerQuery(isWithFbBody, false);
 			
-			//Create new stream formatter to create new RDF stream from the results of a query
-			RDFStreamFormatter isInFsStreamFormatter = new RDFStreamFormatter("http://streamreasoning.org/streams/IsInFs");
-			RDFStreamFormatter isWithFbStreamFormatter = new RDFStreamFormatter("http://streamreasoning.org/streams/IsWithFb");
+			//Create new query channels to create new RDF streams from the results of a query, one batch per result
+			QueryChannel isInFsStreamFormatter = new QueryChannel("http://streamreasoning.org/streams/IsInFs");
+			QueryChannel isWithFbStreamFormatter = new QueryChannel("http://streamreasoning.org/streams/IsWithFb");
+			//Stamp the results with the timestamps of the windows they come from
+			isInFsStreamFormatter.watch(fs, 10000L);
+			isWithFbStreamFormatter.watch(fb, 10000L);
 			
 			//Register the new streams in the engine. The isInFsStreamFormatter and isWithFbStreamFormatter will contain the results of the IsInFs and IsWithFb query
 			engine.registerStream(isInFsStreamFormatter);
@@ -114,8 +114,8 @@ public class SR4LD2014_Ex3 {
 			isInWithProxy.addObserver(new ConsoleFormatter());
 
 			//Start streaming data
-			fsThread.start();
-			fbThread.start();
+			fs.start();
+			fb.start();
 
 		}catch (Exception e) {
 			logger.error(e.getMessage(), e);
@@ -67,9 +67,6 @@ public class SR4LD2014_Ex4 {
 			engine.registerStream(fb);
 			engine.registerStream(s);
 
-			Thread fbThread = new Thread(fb);
-			Thread sThread = new Thread(s);
-
 			//Register new query in the engine
 			CsparqlQueryResultProxy c = engine.registerQuery(queryBody, false);
 			
@@ -77,8 +74,8 @@ public class SR4LD2014_Ex4 {
 			c.addObserver(new ConsoleFormatter());
 
 			//Start streaming data
-			fbThread.start();
-			sThread.start();
+			fb.start();
+			s.start();
 
 		}catch (Exception e) {
 			logger.error(e.getMessage(), e);
@@ -69,17 +69,14 @@ public class SR4LD2014_Ex5 {
 			engine.registerStream(fb);
 			engine.registerStream(s);
 
-			Thread fbThread = new Thread(fb);
-			Thread sThread = new Thread(s);
-
 			//Register new query in the engine
 			CsparqlQueryResultProxy c = engine.registerQuery(queryBody, false);			
 			//Attach a result consumer to the query result proxy to print the results on the console
 			c.addObserver(new ConsoleFormatter());
 
 			//Start streaming data
-			fbThread.start();
-			sThread.start();
+			fb.start();
+			s.start();
 
 		}catch (Exception e) {
 			logger.error(e.getMessage(), e);
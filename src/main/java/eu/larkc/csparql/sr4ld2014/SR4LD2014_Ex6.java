@@ -69,9 +69,6 @@ public class SR4LD2014_Ex6 {
 			engine.registerStream(fb);
 			engine.registerStream(s);
 
-			Thread fbThread = new Thread(fb);
-			Thread sThread = new Thread(s);
-
 			//Register new query in the engine
 			CsparqlQueryResultProxy c = engine.registerQuery(queryBody, false);			
 
@@ -79,8 +76,8 @@ public class SR4LD2014_Ex6 {
 			c.addObserver(new ConsoleFormatter());
 
 			//Start streaming data
-			fbThread.start();
-			sThread.start();
+			fb.start();
+			s.start();
 			
 			engine.updateReasoner(c.getSparqlQueryId(), CsparqlUtils.fileToString("examples_files/rdfs.rules"), ReasonerChainingType.FORWARD, CsparqlUtils.serializeRDFFile("examples_files/tbox.rdf"));
 	
@@ -65,7 +65,6 @@ public class SR4LD2014_Ex7 {
 			
 			//Register new streams in the engine
 			engine.registerStream(fb);
-			Thread fbThread = new Thread(fb);
 			
 			engine.putStaticNamedModel("http://streamreasoning.org/roomConnection", CsparqlUtils.serializeRDFFile("examples_files/roomConnection.rdf"));
 
@@ -75,7 +74,7 @@ public class SR4LD2014_Ex7 {
 			//Attach a result consumer to the query result proxy to print the results on the console
 			c.addObserver(new ConsoleFormatter());
 
-			fbThread.start();
+			fb.start();
 			
 			String updateQuery = "PREFIX : <http://www.streamreasoning.org/ontologies/sr4ld2014-onto#> "
 					+ "INSERT DATA "
@@ -20,15 +20,19 @@
  ******************************************************************************/
 package eu.larkc.csparql.sr4ld2014.streamer;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import eu.larkc.csparql.cep.api.RdfQuadruple;
-import eu.larkc.csparql.cep.api.RdfStream;
+import eu.larkc.csparql.runtime.BufferedRdfStream;
+import eu.larkc.csparql.runtime.PeriodicProducer;
 
-public class FacebookStreamer extends RdfStream implements Runnable  {
+public class FacebookStreamer extends BufferedRdfStream implements PeriodicProducer  {
 
 	private long sleepTime;
 	private String baseUri;
+	private final Random random = new Random();
 
 	public FacebookStreamer(String iri, String baseUri,long sleepTime) {
 		super(iri);
@@ -36,47 +40,37 @@ public class FacebookStreamer extends RdfStream implements Runnable  {
 		this.baseUri = baseUri;
 	}
 
-	public void run() {
-
-		Random random = new Random();
-		int senderIndex;
-		int subjectIndex;
-		int roomIndex;
-		int postIndex;
-		int numberOfPerson;
-
-		while(true){
-			try{
+	public long getPeriod() {
+		return sleepTime;
+	}
 
-				numberOfPerson = random.nextInt(3);
-				senderIndex = random.nextInt(5);
-				subjectIndex = random.nextInt(5);
-				roomIndex = random.nextInt(5);
-				postIndex = random.nextInt(Integer.MAX_VALUE);
+	public void tick() {
 
-				RdfQuadruple q = new RdfQuadruple(baseUri + "person" + senderIndex, baseUri + "posts", baseUri + "post" + postIndex, System.currentTimeMillis());
-				this.put(q);
-				if(numberOfPerson < 2){
-					q = new RdfQuadruple(baseUri+"post" + postIndex, baseUri + "who", baseUri + "person" + subjectIndex, System.currentTimeMillis());
-					this.put(q);
-				} else {
-						q = new RdfQuadruple(baseUri+"post" + postIndex, baseUri + "who", baseUri + "person" + senderIndex, System.currentTimeMillis());
-						this.put(q);
-						q = new RdfQuadruple(baseUri+"post" + postIndex, baseUri + "who", baseUri + "person" + subjectIndex, System.currentTimeMillis());
-						this.put(q);
-				}
-				if(roomIndex != 0){
-					q = new RdfQuadruple(baseUri+"post" + postIndex, baseUri + "where", baseUri + "room" + roomIndex, System.currentTimeMillis());
-					this.put(q);
-				}
+		long now = System.currentTimeMillis();
+		List<RdfQuadruple> batch = new ArrayList<RdfQuadruple>(4);
 
-				Thread.sleep(sleepTime);
+		int numberOfPerson = random.nextInt(3);
+		int senderIndex = random.nextInt(5);
+		int subjectIndex = random.nextInt(5);
+		int roomIndex = random.nextInt(5);
+		int postIndex = random.nextInt(Integer.MAX_VALUE);
 
-			} catch(Exception e){
-				e.printStackTrace();
-			}
+		RdfQuadruple q = new RdfQuadruple(baseUri + "person" + senderIndex, baseUri + "posts", baseUri + "post" + postIndex, now);
+		batch.add(q);
+		if(numberOfPerson < 2){
+			q = new RdfQuadruple(baseUri+"post" + postIndex, baseUri + "who", baseUri + "person" + subjectIndex, now);
+			batch.add(q);
+		} else {
+			q = new RdfQuadruple(baseUri+"post" + postIndex, baseUri + "who", baseUri + "person" + senderIndex, now);
+			batch.add(q);
+			q = new RdfQuadruple(baseUri+"post" + postIndex, baseUri + "who", baseUri + "person" + subjectIndex, now);
+			batch.add(q);
 		}
-
+		if(roomIndex != 0){
+			q = new RdfQuadruple(baseUri+"post" + postIndex, baseUri + "where", baseUri + "room" + roomIndex, now);
+			batch.add(q);
+		}
+		this.offer(batch.toArray(new RdfQuadruple[batch.size()]));
 	}
 
 }
@@ -20,15 +20,19 @@
  ******************************************************************************/
 package eu.larkc.csparql.sr4ld2014.streamer;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import eu.larkc.csparql.cep.api.RdfQuadruple;
-import eu.larkc.csparql.cep.api.RdfStream;
+import eu.larkc.csparql.runtime.BufferedRdfStream;
+import eu.larkc.csparql.runtime.PeriodicProducer;
 
-public class FoursquareStreamer extends RdfStream implements Runnable  {
+public class FoursquareStreamer extends BufferedRdfStream implements PeriodicProducer  {
 
 	private long sleepTime;
 	private String baseUri;
+	private final Random random = new Random();
 
 	public FoursquareStreamer(String iri, String baseUri,long sleepTime) {
 		super(iri);
@@ -36,34 +40,26 @@ public class FoursquareStreamer extends RdfStream implements Runnable  {
 		this.baseUri = baseUri;
 	}
 
-	public void run() {
-		
-		Random random = new Random();
-		int senderIndex;
-		int roomIndex;
-		int postIndex;
-				
-		while(true){
-			try{
-				
-				senderIndex = random.nextInt(5);
-				roomIndex = random.nextInt(5);
-				postIndex = random.nextInt(Integer.MAX_VALUE);
+	public long getPeriod() {
+		return sleepTime;
+	}
 
-				RdfQuadruple q = new RdfQuadruple(baseUri + "person" + senderIndex, baseUri + "posts", baseUri + "post" + postIndex, System.currentTimeMillis());
-				this.put(q);
-				q = new RdfQuadruple(baseUri+"post" + postIndex, baseUri + "who", baseUri+"person" + senderIndex, System.currentTimeMillis());
-				this.put(q);
-				q = new RdfQuadruple(baseUri+"post" + postIndex, baseUri + "where", baseUri+"room" + roomIndex, System.currentTimeMillis());
-				this.put(q);
+	public void tick() {
 
-				Thread.sleep(sleepTime);
+		long now = System.currentTimeMillis();
+		List<RdfQuadruple> batch = new ArrayList<RdfQuadruple>(4);
 
-			} catch(Exception e){
-				e.printStackTrace();
-			}
-		}
+		int senderIndex = random.nextInt(5);
+		int roomIndex = random.nextInt(5);
+		int postIndex = random.nextInt(Integer.MAX_VALUE);
 
+		RdfQuadruple q = new RdfQuadruple(baseUri + "person" + senderIndex, baseUri + "posts", baseUri + "post" + postIndex, now);
+		batch.add(q);
+		q = new RdfQuadruple(baseUri+"post" + postIndex, baseUri + "who", baseUri+"person" + senderIndex, now);
+		batch.add(q);
+		q = new RdfQuadruple(baseUri+"post" + postIndex, baseUri + "where", baseUri+"room" + roomIndex, now);
+		batch.add(q);
+		this.offer(batch.toArray(new RdfQuadruple[batch.size()]));
 	}
 
 }
@@ -20,15 +20,19 @@
  ******************************************************************************/
 package eu.larkc.csparql.sr4ld2014.streamer;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import eu.larkc.csparql.cep.api.RdfQuadruple;
-import eu.larkc.csparql.cep.api.RdfStream;
+import eu.larkc.csparql.runtime.BufferedRdfStream;
+import eu.larkc.csparql.runtime.PeriodicProducer;
 
-public class SensorsStreamer extends RdfStream implements Runnable  {
+public class SensorsStreamer extends BufferedRdfStream implements PeriodicProducer  {
 	
 	private long sleepTime;
 	private String baseUri;
+	private final Random random = new Random();
 
 	public SensorsStreamer(String iri, String baseUri,long sleepTime) {
 		super(iri);
@@ -36,46 +40,36 @@ public class SensorsStreamer extends RdfStream implements Runnable  {
 		this.baseUri = baseUri;
 	}
 
-	public void run() {
-		
-		Random random = new Random();
-		int sensorIndex;
-		int subjectIndex;
-		int roomIndex;
-		int observationIndex;
-		int numberOfPerson;
+	public long getPeriod() {
+		return sleepTime;
+	}
+
+	public void tick() {
+
+		long now = System.currentTimeMillis();
+		List<RdfQuadruple> batch = new ArrayList<RdfQuadruple>(4);
 
-		while(true){
-			try{
-				
-				numberOfPerson = random.nextInt(3);
-				sensorIndex = random.nextInt(5);
+		int numberOfPerson = random.nextInt(3);
+		int sensorIndex = random.nextInt(5);
+		int subjectIndex = random.nextInt(5);
+		int roomIndex = random.nextInt(5);
+		int observationIndex = random.nextInt(Integer.MAX_VALUE);
+
+		RdfQuadruple q = new RdfQuadruple(baseUri + "sensor" + sensorIndex, baseUri + "observes", baseUri + "observation" + observationIndex, now);
+		batch.add(q);
+		if(numberOfPerson < 2){
+			q = new RdfQuadruple(baseUri + "observation" + observationIndex, baseUri + "who", baseUri+"person" + subjectIndex, now);
+			batch.add(q);
+		} else {
+			for(int i = 0 ; i < numberOfPerson ; i++){
+				q = new RdfQuadruple(baseUri + "observation" + observationIndex, baseUri + "who", baseUri+"person" + subjectIndex, now);
+				batch.add(q);
 				subjectIndex = random.nextInt(5);
-				roomIndex = random.nextInt(5);
-				observationIndex = random.nextInt(Integer.MAX_VALUE);
-				
-				RdfQuadruple q = new RdfQuadruple(baseUri + "sensor" + sensorIndex, baseUri + "observes", baseUri + "observation" + observationIndex, System.currentTimeMillis());
-				this.put(q);				
-				if(numberOfPerson < 2){
-					q = new RdfQuadruple(baseUri + "observation" + observationIndex, baseUri + "who", baseUri+"person" + subjectIndex, System.currentTimeMillis());
-					this.put(q);
-				} else {
-					for(int i = 0 ; i < numberOfPerson ; i++){
-						q = new RdfQuadruple(baseUri + "observation" + observationIndex, baseUri + "who", baseUri+"person" + subjectIndex, System.currentTimeMillis());
-						this.put(q);
-						subjectIndex = random.nextInt(5);
-					}
-				}				
-				q = new RdfQuadruple(baseUri + "observation" + observationIndex, baseUri + "where", baseUri+"room" + roomIndex, System.currentTimeMillis());
-				this.put(q);
-				
-				Thread.sleep(sleepTime);
-				
-			} catch(Exception e){
-				e.printStackTrace();
 			}
 		}
-
+		q = new RdfQuadruple(baseUri + "observation" + observationIndex, baseUri + "where", baseUri+"room" + roomIndex, now);
+		batch.add(q);
+		this.offer(batch.toArray(new RdfQuadruple[batch.size()]));
 	}
 
 }
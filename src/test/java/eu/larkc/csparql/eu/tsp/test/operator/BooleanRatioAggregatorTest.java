@@ -0,0 +1,83 @@
+package eu.larkc.csparql.eu.tsp.test.operator;
+
+import eu.larkc.csparql.eu.tsp.test.couchAgent;
+import eu.larkc.csparql.eu.tsp.test.literal.LiteralEncoder;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The cleancouch query computed by a {@link BooleanRatioAggregator} gives the same events as
+ * computed by the engine, for the same window contents, in every branch of its thresholds.
+ */
+public class BooleanRatioAggregatorTest {
+
+    private static final String COUCH = "http://ecareathome.org/stream#couch";
+    private static final String SENSOR = "http://ecareathome.org/couch_sensor";
+    private static final long RANGE = 2000;
+
+    /** cleancouch of couchAgent on a 2s window */
+    private static final String QUERY = couchAgent.STREAM_CLEAN_COUCH
+            .replace("[ RANGE 10s STEP 10s]", "[ RANGE 2s STEP 2s]");
+
+    private final EngineComparison window = new EngineComparison(COUCH, ObservationWindowOperator.SOSA_HASH, RANGE);
+
+    @Test
+    public void mostlyTrueIsTrue() throws Exception {
+        // 9/10 >= 0.9
+        observe(1, 9, 1);
+        assertSameEvents(1);
+    }
+
+    @Test
+    public void mostlyFalseIsFalse() throws Exception {
+        // 1/11 < 0.1
+        observe(1, 1, 10);
+        assertSameEvents(1);
+    }
+
+    @Test
+    public void mixedIsTrue() throws Exception {
+        // 1/2 < 0.8
+        observe(1, 1, 1);
+        assertSameEvents(1);
+    }
+
+    @Test
+    public void ratioBetweenThresholdsIsTheValue() throws Exception {
+        // 4/5 and 5/6, the latter not exact
+        observe(1, 4, 1);
+        observe(2, 5, 1);
+        assertSameEvents(2);
+    }
+
+    @Test
+    public void windowsWithOneResultGiveNoEvent() throws Exception {
+        // the engine joins on both counts: all true or all false, no event
+        observe(1, 3, 0);
+        observe(2, 0, 3);
+        observe(3, 1, 1);
+        Set<String> events = assertSameEvents(1);
+        assertTrue(events.iterator().next().startsWith(SENSOR + "3 "));
+    }
+
+    /** Adds {@code trueCount} true then {@code falseCount} false observations of a sensor. */
+    private void observe(int sensor, int trueCount, int falseCount) {
+        for (int i = 0; i < trueCount; i++) {
+            window.observe(SENSOR + sensor, LiteralEncoder.booleanLiteral(true));
+        }
+        for (int i = 0; i < falseCount; i++) {
+            window.observe(SENSOR + sensor, LiteralEncoder.booleanLiteral(false));
+        }
+    }
+
+    private Set<String> assertSameEvents(int expectedEvents) throws Exception {
+        Set<String> expected = window.engineEvents(QUERY);
+        assertEquals(expectedEvents, expected.size());
+        assertEquals(expected, window.operatorEvents(QUERY));
+        return expected;
+    }
+}
@@ -0,0 +1,61 @@
+package eu.larkc.csparql.eu.tsp.test.operator;
+
+import eu.larkc.csparql.eu.tsp.test.literal.LiteralEncoder;
+import eu.larkc.csparql.eu.tsp.test.tvAgent;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * The cleantv queries computed by a {@link ComplexEventAggregator} give the same events as
+ * computed by the engine, for the same window contents.
+ */
+public class ComplexEventAggregatorTest {
+
+    private static final String TV = "http://ecareathome.org/stream#tv";
+    private static final long RANGE = 2000;
+
+    /** cleantv of tvAgent, thresholded at 20, on a 2s window */
+    private static final String THRESHOLD_QUERY = tvAgent.STREAM_CLEAN_TV
+            .replace("[ RANGE 10s STEP 10s]", "[ RANGE 2s STEP 2s]");
+    /** the same, with the average itself as value */
+    private static final String AVERAGE_QUERY = THRESHOLD_QUERY
+            .replace("BIND (if (( ?avg <20 ) , false , true ) AS ?value ) ", "BIND ( ?avg AS ?value ) ");
+
+    private final EngineComparison window = new EngineComparison(TV, ObservationWindowOperator.SOSA_HASH, RANGE);
+
+    @Test
+    public void averageIsTruncatedAsByTheEngine() throws Exception {
+        // 2/3: rounded HALF_EVEN instead of truncated, the last digit would differ
+        observe(1, 1, 1, 1, 1, 0);
+        assertSameEvents(AVERAGE_QUERY);
+    }
+
+    @Test
+    public void thresholdQueryGivesTheEngineEvents() throws Exception {
+        observe(1, 10, 1, 25, 1, 40, 2, 3, 2, 4, 3, 7, 3, 8, 3, 9);
+        assertSameEvents(THRESHOLD_QUERY);
+    }
+
+    @Test
+    public void averageQueryGivesTheEngineEvents() throws Exception {
+        observe(1, 10, 1, 25, 1, 40, 2, 3, 2, 4, 3, 7, 3, 8, 3, 9);
+        assertSameEvents(AVERAGE_QUERY);
+    }
+
+    /** Observations given as sensor number, value, sensor number, value... */
+    private void observe(int... readings) {
+        for (int i = 0; i < readings.length; i += 2) {
+            window.observe("http://ecareathome.org/tv_sensor" + readings[i], LiteralEncoder.integerLiteral(readings[i + 1]));
+        }
+    }
+
+    private void assertSameEvents(String query) throws Exception {
+        Set<String> expected = window.engineEvents(query);
+        assertFalse("no event from the engine", expected.isEmpty());
+        assertEquals(expected, window.operatorEvents(query));
+    }
+}
@@ -0,0 +1,167 @@
+package eu.larkc.csparql.eu.tsp.test.operator;
+
+import eu.larkc.csparql.cep.api.RdfQuadruple;
+import eu.larkc.csparql.cep.api.RdfStream;
+import eu.larkc.csparql.common.RDFTable;
+import eu.larkc.csparql.common.RDFTuple;
+import eu.larkc.csparql.core.engine.CsparqlEngineImpl;
+import eu.larkc.csparql.core.engine.CsparqlQueryResultProxy;
+import eu.larkc.csparql.eu.tsp.test.literal.TimestampLiterals;
+import eu.larkc.csparql.eu.tsp.test.streamer.ObservationStream;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Computes a REGISTER STREAM query in the engine and in the operator
+ * {@link AggregateQueryRecognizer} compiles it into, from the same observations, and gives
+ * the ComplexEvents of each as comparable strings.
+ *
+ * The observations are built once, with fixed timestamps within one window aligned on the
+ * range, which is all the operator windows on. The engine windows on arrival: its first
+ * window starts when the query is registered and the observations are put right after.
+ */
+final class EngineComparison {
+
+    /** timestamp of the first observation, a multiple of any range of a few seconds */
+    static final long WINDOW_START = 1500000000000L;
+
+    private final String iri;
+    private final String sosa;
+    private final long range;
+    private final List<RdfQuadruple> quads = new ArrayList<RdfQuadruple>();
+    private int observations;
+
+    /**
+     * @param iri          IRI of the stream the query reads
+     * @param sosa         namespace of the sosa properties of its observations
+     * @param rangeMillis  range of the query
+     */
+    EngineComparison(String iri, String sosa, long rangeMillis) {
+        this.iri = iri;
+        this.sosa = sosa;
+        this.range = rangeMillis;
+    }
+
+    /** Adds one observation of {@code sensor}, 10 ms after the previous one. */
+    void observe(String sensor, String value) {
+        long timestamp = WINDOW_START + 10L * observations;
+        String node = "_:obs" + observations;
+        String interval = node + "time";
+        String time = TimestampLiterals.getDefault().dateTime(timestamp);
+        observations++;
+
+        quads.add(new RdfQuadruple(node, ObservationStream.DUL_IS_OBSERVABLE_AT, interval, timestamp));
+        quads.add(new RdfQuadruple(node, sosa + "isObservedBy", sensor, timestamp));
+        quads.add(new RdfQuadruple(node, sosa + "hasSimpleResult", value, timestamp));
+        quads.add(new RdfQuadruple(interval, ObservationStream.TIME_HAS_UPPER_TIMESTAMP, time, timestamp));
+        quads.add(new RdfQuadruple(interval, ObservationStream.TIME_HAS_LOWER_TIMESTAMP, time, timestamp));
+    }
+
+    /** The events of the first non-empty result of {@code query} in a new engine. */
+    Set<String> engineEvents(String query) throws Exception {
+        CsparqlEngineImpl engine = new CsparqlEngineImpl();
+        engine.initialize();
+        RdfStream input = new RdfStream(iri);
+        engine.registerStream(input);
+        try {
+            CsparqlQueryResultProxy proxy = engine.registerQuery(query, false);
+            final List<RDFTable> results = new ArrayList<RDFTable>();
+            proxy.addObserver(new Observer() {
+                public void update(Observable o, Object arg) {
+                    synchronized (results) {
+                        if (arg instanceof RDFTable && ((RDFTable) arg).size() > 0) {
+                            results.add((RDFTable) arg);
+                            results.notifyAll();
+                        }
+                    }
+                }
+            });
+            for (RdfQuadruple q : quads) {
+                input.put(q);
+            }
+
+            RDFTable first;
+            synchronized (results) {
+                long deadline = System.currentTimeMillis() + 4 * range;
+                while (results.isEmpty() && System.currentTimeMillis() < deadline) {
+                    results.wait(Math.max(1L, deadline - System.currentTimeMillis()));
+                }
+                assertFalse("no result from the engine", results.isEmpty());
+                first = results.get(0);
+            }
+            engine.unregisterQuery(proxy.getId());
+
+            List<String[]> triples = new ArrayList<String[]>();
+            for (RDFTuple tuple : first) {
+                triples.add(new String[] {tuple.get(0), tuple.get(1), tuple.get(2)});
+            }
+            return events(triples);
+        } finally {
+            engine.unregisterStream(iri);
+        }
+    }
+
+    /** The events published by the operator compiled from {@code query} for the window. */
+    Set<String> operatorEvents(String query) throws Exception {
+        RdfStream input = new RdfStream(iri);
+        ObservationWindowOperator operator = AggregateQueryRecognizer.attach(query, input);
+        assertNotNull("query not recognized", operator);
+        final List<String[]> triples = new ArrayList<String[]>();
+        operator.addObserver(new Observer() {
+            public void update(Observable o, Object arg) {
+                RdfQuadruple q = (RdfQuadruple) arg;
+                synchronized (triples) {
+                    triples.add(new String[] {q.getSubject(), q.getPredicate(), q.getObject()});
+                }
+            }
+        });
+        for (RdfQuadruple q : quads) {
+            input.put(q);
+        }
+        operator.flush();
+        operator.drain(5000);
+        operator.release();
+        synchronized (triples) {
+            return events(triples);
+        }
+    }
+
+    /**
+     * The ComplexEvents of {@code triples} without their blank node labels:
+     * "sensor value lower upper", sorted.
+     */
+    private Set<String> events(List<String[]> triples) {
+        Map<String, Map<String, String>> subjects = new HashMap<String, Map<String, String>>();
+        for (String[] triple : triples) {
+            Map<String, String> properties = subjects.get(triple[0]);
+            if (properties == null) {
+                properties = new HashMap<String, String>();
+                subjects.put(triple[0], properties);
+            }
+            properties.put(triple[1], triple[2]);
+        }
+        Set<String> events = new TreeSet<String>();
+        for (Map<String, String> event : subjects.values()) {
+            if (!ObservationWindowOperator.EVENT_COMPLEX_EVENT.equals(event.get(ObservationWindowOperator.RDF_TYPE))) {
+                continue;
+            }
+            Map<String, String> interval = subjects.get(event.get(ObservationStream.DUL_IS_OBSERVABLE_AT));
+            assertNotNull("event without time interval", interval);
+            events.add(event.get(sosa + "isObservedBy")
+                    + " " + event.get(sosa + "hasSimpleResult")
+                    + " " + interval.get(ObservationStream.TIME_HAS_LOWER_TIMESTAMP)
+                    + " " + interval.get(ObservationStream.TIME_HAS_UPPER_TIMESTAMP));
+        }
+        return events;
+    }
+}
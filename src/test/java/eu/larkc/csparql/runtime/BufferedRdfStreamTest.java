@@ -0,0 +1,101 @@
+package eu.larkc.csparql.runtime;
+
+import eu.larkc.csparql.cep.api.RdfQuadruple;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A runtime thread never waits for room in a BLOCK queue.
+ */
+public class BufferedRdfStreamTest {
+
+    private static final int CAPACITY = 10;
+    private static final int BATCH = 5;
+
+    private final CountDownLatch delivering = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch ticked = new CountDownLatch(1);
+
+    private BatchProducer stream;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (stream != null) {
+            stream.stop();
+        }
+    }
+
+    @Test
+    public void tickDoesNotBlockOneQuadBelowCapacity() throws Exception {
+        stream = new BatchProducer("http://example.org/blocking");
+        stream.setCapacity(CAPACITY);
+        stream.setOverflowPolicy(OverflowPolicy.BLOCK);
+        stream.addObserver(new Observer() {
+            public void update(Observable o, Object arg) {
+                delivering.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        // the first quad holds the delivery, the next ones stay queued
+        stream.put(quad(0));
+        assertTrue("no delivery", delivering.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < CAPACITY; i++) {
+            stream.put(quad(i));
+        }
+        assertEquals(CAPACITY - 1, stream.getQueueDepth());
+
+        stream.start();
+        assertTrue("tick blocked on a full queue", ticked.await(5, TimeUnit.SECONDS));
+        assertEquals(CAPACITY - 1, stream.getQueueDepth());
+        assertEquals((long) BATCH, stream.getDroppedCount());
+        // counted once the tick has returned
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stream.getSkippedTicks() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1L, stream.getSkippedTicks());
+
+        release.countDown();
+        assertTrue(stream.drain(5000));
+        assertEquals((long) CAPACITY, stream.getDeliveredCount());
+    }
+
+    private static RdfQuadruple quad(int i) {
+        return new RdfQuadruple("http://example.org/s" + i, "http://example.org/p", "http://example.org/o", i);
+    }
+
+    /** Offers one batch of {@link #BATCH} quads in its first tick. */
+    private final class BatchProducer extends BufferedRdfStream implements PeriodicProducer {
+
+        BatchProducer(String iri) {
+            super(iri);
+        }
+
+        public long getPeriod() {
+            return 60000;
+        }
+
+        public void tick() {
+            RdfQuadruple[] batch = new RdfQuadruple[BATCH];
+            for (int i = 0; i < BATCH; i++) {
+                batch[i] = quad(CAPACITY + i);
+            }
+            offer(batch);
+            ticked.countDown();
+        }
+    }
+}